@@ -0,0 +1,38 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped write counters that let a cache load run outside the cache's locks. A loader reads the generation of its
+ * key before querying the database and only caches the result if the generation is unchanged afterwards; writers
+ * advance the generation before touching the cache. Keys sharing a stripe only cost each other a skipped put.
+ *
+ * Loading outside the lock matters because a loader needs a pooled connection, while writers run their cache
+ * maintenance before their own connection is released. A writer blocked on a loading entry, and a loader blocked
+ * on the pool, would otherwise deadlock once every connection is held by such a writer.
+ *
+ * {@link MessageVersions} uses the same counters as per-account list versions.
+ */
+final class Generations {
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+
+    /**
+     * @return the current generation of key, to be compared after a load
+     */
+    long current(int key) {
+        return stripes.get(stripe(key));
+    }
+
+    /**
+     * Marks every load of key that is in flight as stale
+     */
+    void advance(int key) {
+        stripes.incrementAndGet(stripe(key));
+    }
+
+    private static int stripe(int key) {
+        return (key ^ (key >>> 16)) & (STRIPES - 1);
+    }
+}
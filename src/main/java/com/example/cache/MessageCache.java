@@ -0,0 +1,80 @@
+package com.example.cache;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Bounded read-through cache of single Messages, keyed by messageId.
+ *
+ * Entries are evicted when the cache grows past its maximum size or once they are older than the configured TTL.
+ * Every write to a Message must call {@link #invalidate(int)}; the entry is dropped after the writing transaction
+ * completes, which also covers the bulk JPQL update that bypasses the persistence context. Misses are loaded
+ * outside the cache's locks and discarded if the Message was written while they ran, see {@link Generations}.
+ */
+@Component
+public class MessageCache {
+    private final Cache<Integer, Message> cache;
+    private final Generations generations = new Generations();
+
+    public MessageCache(@Value("${socialmedia.cache.messages.maximum-size:10000}") long maximumSize,
+                        @Value("${socialmedia.cache.messages.expire-after-write:PT5M}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached Message, loading and caching it on a miss. Missing messages are not cached.
+     * @param messageId the ID of the Message we wish to find
+     * @param loader queries the database for the Message on a miss
+     * @return an Optional representation of the message, if it exists.
+     */
+    public Optional<Message> get(int messageId, IntFunction<Optional<Message>> loader) {
+        Message cached = cache.getIfPresent(messageId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long generation = generations.current(messageId);
+        Optional<Message> loaded = loader.apply(messageId);
+        loaded.ifPresent(message -> cache.asMap().compute(messageId,
+                (id, existing) -> existing != null || generations.current(id) != generation ? existing : message));
+        return loaded;
+    }
+
+    /**
+     * Drops the cached copy of a Message once the current transaction completes
+     * @param messageId the ID of the Message that was updated or deleted
+     */
+    public void invalidate(int messageId) {
+        TransactionCallbacks.afterCompletion(() -> {
+            generations.advance(messageId);
+            cache.invalidate(messageId);
+        });
+    }
+
+    /**
+     * @return hit, miss and eviction counts since startup
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of cached Messages
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Bounded cache of each Message's JSON, as the UTF-8 bytes the application ObjectMapper writes for it, keyed by
+ * messageId.
+ *
+ * Every entry keeps a copy of the Message it was serialized from and is only served for an equal Message, so a
+ * stale entry can never reach a response: the caller always holds the current Message, and a mismatch is simply
+ * re-serialized and replaced. Writers still call {@link #invalidate(int)} so that changed and deleted Messages
+ * stop taking up space. Caffeine's frequency-based admission keeps a one-off scan, such as a full export, from
+ * flushing the hot entries.
+ */
+@Component
+public class MessageJsonCache {
+    private final Cache<Integer, Entry> cache;
+    private final ObjectWriter writer;
+
+    public MessageJsonCache(ObjectMapper objectMapper,
+                            @Value("${socialmedia.cache.message-json.maximum-size:100000}") long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        this.writer = objectMapper.writerFor(Message.class);
+    }
+
+    /**
+     * Returns the JSON of a Message, serializing and caching it unless an entry for the same state exists
+     * @param message the Message to write; it must not be modified while its JSON is in use
+     * @return the UTF-8 JSON of the Message. The array is shared and must not be modified.
+     */
+    public byte[] get(Message message) {
+        Integer messageId = message.getMessageId();
+        if (messageId == null) {
+            return serialize(message);
+        }
+
+        Entry cached = cache.getIfPresent(messageId);
+        if (cached != null && cached.message.equals(message)) {
+            return cached.json;
+        }
+
+        Entry entry = new Entry(message, serialize(message));
+        cache.put(messageId, entry);
+        return entry.json;
+    }
+
+    /**
+     * Drops the JSON of a Message once the current transaction completes
+     * @param messageId the ID of the Message that was updated or deleted
+     */
+    public void invalidate(int messageId) {
+        TransactionCallbacks.afterCompletion(() -> cache.invalidate(messageId));
+    }
+
+    /**
+     * @return hit, miss and eviction counts since startup. A hit on an entry for an older state counts as a hit.
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return the approximate number of cached Messages
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private byte[] serialize(Message message) {
+        try {
+            return writer.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + message, e);
+        }
+    }
+
+    private static final class Entry {
+        private final Message message;
+        private final byte[] json;
+
+        private Entry(Message message, byte[] json) {
+            // A copy, since the Message passed in may be a managed entity that changes later
+            this.message = new Message(message.getMessageId(), message.getPostedBy(), message.getMessageText(), message.getTimePostedEpoch());
+            this.json = json;
+        }
+    }
+}
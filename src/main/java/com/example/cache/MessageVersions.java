@@ -0,0 +1,76 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+
+/**
+ * Version counters behind the ETags of the message lists: one for GET /messages, and one per account for
+ * GET /accounts/{accountId}/messages. Every committed message write advances the global version and the version of
+ * the account that posted the message.
+ *
+ * A tag is only valid if the version is read before the list it describes. A write that commits in between then
+ * advances the version past the tag, so the next poll is answered in full. Versions advance after commit; a tag
+ * handed out just before a commit stays valid until the advance, which follows the commit immediately.
+ *
+ * Tags also carry the startup time, since the counters restart from zero with the process, and the paging
+ * parameters, since each page is a different list.
+ */
+@Component
+public class MessageVersions {
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong all = new AtomicLong();
+    private final Generations accounts = new Generations();
+
+    /**
+     * @return the strong ETag of the current GET /messages page
+     */
+    public String messagesTag(Integer after, Integer limit) {
+        return tag(all.get(), "all", after, limit);
+    }
+
+    /**
+     * @return the strong ETag of the current GET /messages?since={since}&until={until} page
+     */
+    public String messagesTag(Long since, Long until, String before, Integer limit) {
+        return tag(all.get(), "all", since, until, before, limit);
+    }
+
+    /**
+     * @return the strong ETag of the current GET /accounts/{accountId}/messages page. Accounts share versions
+     *         in stripes, so a write can also change the tag of an unrelated account, but never leave a tag stale.
+     */
+    public String accountMessagesTag(int accountId, Integer after, Integer limit) {
+        return tag(accounts.current(accountId), String.valueOf(accountId), after, limit);
+    }
+
+    /**
+     * @return the strong ETag of the current GET /accounts/{accountId}/messages?since={since}&until={until} page
+     */
+    public String accountMessagesTag(int accountId, Long since, Long until, String before, Integer limit) {
+        return tag(accounts.current(accountId), String.valueOf(accountId), since, until, before, limit);
+    }
+
+    /**
+     * Advances the versions a created, updated or deleted Message appears under, once the current transaction
+     * commits
+     * @param message the Message that was written
+     */
+    public void changed(Message message) {
+        int postedBy = message.getPostedBy();
+        TransactionCallbacks.afterCommit(() -> {
+            all.incrementAndGet();
+            accounts.advance(postedBy);
+        });
+    }
+
+    private String tag(long version, String scope, Object... parameters) {
+        StringBuilder tag = new StringBuilder("\"").append(epoch).append('-').append(version).append('-').append(scope);
+        for (Object parameter : parameters) {
+            tag.append('-').append(parameter == null ? "" : parameter);
+        }
+        return tag.append('"').toString();
+    }
+}
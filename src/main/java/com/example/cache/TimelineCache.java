@@ -0,0 +1,215 @@
+package com.example.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.entity.Message;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * Per-account cache of every Message an Account has posted, in messageId order.
+ *
+ * The cache is bounded by the total number of cached Messages across all accounts, and cold accounts are evicted
+ * first. Accounts with more than maximumMessagesPerAccount messages are remembered as uncacheable, so their reads
+ * go straight to the keyset queries until deletes bring them back under the limit. Writers keep cached timelines
+ * current through {@link #add(Message)}, {@link #update(Message)} and {@link #remove(Message)} instead of
+ * invalidating them; each change is applied after the writing transaction commits. Misses are loaded outside the
+ * cache's locks, and a load that overlapped a write to the same account is returned but not cached, see
+ * {@link Generations}.
+ *
+ * With socialmedia.cache.timelines.verify=true every cache hit is compared against the database and an
+ * IllegalStateException is thrown on any difference. This is meant for tests only, since it defeats the cache.
+ */
+@Component
+public class TimelineCache {
+    private final Cache<Integer, Timeline> cache;
+    private final Generations generations = new Generations();
+    private final int maximumMessagesPerAccount;
+    private final boolean verify;
+
+    public TimelineCache(@Value("${socialmedia.cache.timelines.maximum-messages:100000}") long maximumMessages,
+                         @Value("${socialmedia.cache.timelines.maximum-messages-per-account:1000}") int maximumMessagesPerAccount,
+                         @Value("${socialmedia.cache.timelines.verify:false}") boolean verify) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumMessages)
+                .weigher((Integer accountId, Timeline timeline) -> timeline.weight())
+                .recordStats()
+                .build();
+        this.maximumMessagesPerAccount = maximumMessagesPerAccount;
+        this.verify = verify;
+    }
+
+    /**
+     * Returns the cached timeline of an Account, loading it on a miss.
+     * @param accountId the ID of the Account whose Messages we wish to see
+     * @param loader queries the database for the whole timeline, returning empty if the Account has more than
+     *               {@link #maximumMessagesPerAccount()} messages
+     * @return the Account's Messages in messageId order, or empty if the timeline is too large to cache
+     * @throws IllegalStateException thrown in verify mode if a cached timeline differs from the database
+     */
+    public Optional<List<Message>> get(int accountId, IntFunction<Optional<List<Message>>> loader) {
+        Timeline timeline = cache.getIfPresent(accountId);
+        if (timeline == null) {
+            long generation = generations.current(accountId);
+            Timeline loaded = loader.apply(accountId).map(TimelineCache::sorted).map(Timeline::new)
+                    .orElseGet(() -> new Timeline(maximumMessagesPerAccount + 1));
+            cache.asMap().compute(accountId,
+                    (id, existing) -> existing != null || generations.current(id) != generation ? existing : loaded);
+            timeline = loaded;
+        }
+
+        if (verify) {
+            Optional<List<Message>> expected = loader.apply(accountId).map(TimelineCache::sorted);
+            if (!expected.equals(Optional.ofNullable(timeline.messages))) {
+                throw new IllegalStateException("Timeline cache for account " + accountId + " is inconsistent: cached="
+                        + timeline.messages + ", database=" + expected.orElse(null));
+            }
+        }
+
+        return Optional.ofNullable(timeline.messages);
+    }
+
+    /**
+     * Adds a newly created Message to its author's cached timeline once the current transaction commits
+     * @param message the persisted Message
+     */
+    public void add(Message message) {
+        Message copy = copyOf(message);
+        TransactionCallbacks.afterCommit(() -> {
+            generations.advance(copy.getPostedBy());
+            cache.asMap().computeIfPresent(copy.getPostedBy(), (accountId, timeline) -> timeline.with(copy));
+        });
+    }
+
+    /**
+     * Replaces an updated Message in its author's cached timeline once the current transaction commits
+     * @param message the Message as it now exists in the database
+     */
+    public void update(Message message) {
+        add(message);
+    }
+
+    /**
+     * Removes a deleted Message from its author's cached timeline once the current transaction commits
+     * @param message the deleted Message
+     */
+    public void remove(Message message) {
+        int postedBy = message.getPostedBy();
+        int messageId = message.getMessageId();
+        TransactionCallbacks.afterCommit(() -> {
+            generations.advance(postedBy);
+            cache.asMap().computeIfPresent(postedBy, (accountId, timeline) -> timeline.without(messageId));
+        });
+    }
+
+    /**
+     * Drops the cached timeline of an Account once the current transaction completes, for changes that reach the
+     * database the timeline is loaded from without going through add, update or remove
+     * @param accountId the ID of the Account whose Messages changed
+     */
+    public void invalidate(int accountId) {
+        TransactionCallbacks.afterCompletion(() -> {
+            generations.advance(accountId);
+            cache.invalidate(accountId);
+        });
+    }
+
+    /**
+     * @return the largest timeline that will be cached
+     */
+    public int maximumMessagesPerAccount() {
+        return maximumMessagesPerAccount;
+    }
+
+    /**
+     * @return hit, miss and eviction counts since startup
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static List<Message> sorted(List<Message> messages) {
+        List<Message> copy = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            copy.add(copyOf(message));
+        }
+        copy.sort((a, b) -> Integer.compare(a.getMessageId(), b.getMessageId()));
+        return Collections.unmodifiableList(copy);
+    }
+
+    private static Message copyOf(Message message) {
+        return new Message(message.getMessageId(), message.getPostedBy(), message.getMessageText(), message.getTimePostedEpoch());
+    }
+
+    /**
+     * An immutable cached timeline. A null message list marks an Account that is too large to cache, and size is then
+     * a lower bound on its number of Messages.
+     */
+    private final class Timeline {
+        private final List<Message> messages;
+        private final int size;
+
+        private Timeline(List<Message> messages) {
+            this.messages = messages;
+            this.size = messages.size();
+        }
+
+        private Timeline(int size) {
+            this.messages = null;
+            this.size = size;
+        }
+
+        private int weight() {
+            return messages == null ? 1 : messages.size() + 1;
+        }
+
+        /**
+         * @return a copy of this timeline containing message, replacing any Message with the same ID
+         */
+        private Timeline with(Message message) {
+            if (messages == null) {
+                // An uncacheable timeline cannot tell an added Message from an updated one, so size stays a lower bound
+                return this;
+            }
+
+            List<Message> copy = new ArrayList<>(messages.size() + 1);
+            boolean added = false;
+            for (Message existing : messages) {
+                if (!added && existing.getMessageId() >= message.getMessageId()) {
+                    copy.add(message);
+                    added = true;
+                }
+                if (!existing.getMessageId().equals(message.getMessageId())) {
+                    copy.add(existing);
+                }
+            }
+            if (!added) {
+                copy.add(message);
+            }
+
+            return copy.size() > maximumMessagesPerAccount ? new Timeline(copy.size()) : new Timeline(Collections.unmodifiableList(copy));
+        }
+
+        /**
+         * @return a copy of this timeline without the Message with messageId, or null to drop an uncacheable
+         *         timeline that may now fit, so that the next read loads it
+         */
+        private Timeline without(int messageId) {
+            if (messages == null) {
+                return size - 1 > maximumMessagesPerAccount ? new Timeline(size - 1) : null;
+            }
+
+            List<Message> copy = new ArrayList<>(messages);
+            copy.removeIf(existing -> existing.getMessageId() == messageId);
+            return new Timeline(Collections.unmodifiableList(copy));
+        }
+    }
+}
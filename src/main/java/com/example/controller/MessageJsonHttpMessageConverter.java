@@ -0,0 +1,98 @@
+package com.example.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import com.example.cache.MessageJsonCache;
+import com.example.entity.Message;
+
+/**
+ * Writes Message and List&lt;Message&gt; response bodies from {@link MessageJsonCache}, copying each Message's
+ * cached JSON straight into the response instead of serializing it again. The output is byte for byte what the
+ * Jackson converter would write. Spring Boot places this converter ahead of the default ones; every other body,
+ * and every request body, is still handled by Jackson.
+ */
+@Component
+public class MessageJsonHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+    private final MessageJsonCache messageJsonCache;
+
+    public MessageJsonHttpMessageConverter(MessageJsonCache messageJsonCache) {
+        super(MediaType.APPLICATION_JSON);
+        this.messageJsonCache = messageJsonCache;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Message.class == clazz || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+
+        ResolvableType resolved = ResolvableType.forType(type != null ? type : clazz);
+        Class<?> raw = resolved.resolve();
+        if (raw == Message.class) {
+            return true;
+        }
+        return raw != null && List.class.isAssignableFrom(raw) && resolved.asCollection().resolveGeneric(0) == Message.class;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        // Without the generic type a List cannot be told apart from any other List
+        return clazz == Message.class && canWrite(mediaType);
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream output = outputMessage.getBody();
+        if (body instanceof Message) {
+            output.write(messageJsonCache.get((Message) body));
+            return;
+        }
+
+        output.write('[');
+        boolean first = true;
+        for (Object message : (List<?>) body) {
+            if (!first) {
+                output.write(',');
+            }
+            output.write(messageJsonCache.get((Message) message));
+            first = false;
+        }
+        output.write(']');
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Request bodies are read by Jackson", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Request bodies are read by Jackson", inputMessage);
+    }
+}
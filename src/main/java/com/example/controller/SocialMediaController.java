@@ -1,10 +1,15 @@
 package com.example.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,12 +17,22 @@ import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.example.cache.MessageJsonCache;
+import com.example.cache.MessageVersions;
 import com.example.entity.Account;
 import com.example.entity.Message;
+import com.example.exception.InvalidPageRequestException;
+import com.example.index.MessageStats;
 import com.example.service.AccountService;
+import com.example.service.MessageBatchResult;
+import com.example.service.MessageSearchPage;
 import com.example.service.MessageService;
+import com.example.service.TimeRangeCursor;
 
 /**
  * TODO: You will need to write your own endpoints and handlers for your controller using Spring. The endpoints you will need can be
@@ -27,12 +42,27 @@ import com.example.service.MessageService;
  */
 @RestController
  public class SocialMediaController {
+    // Response header carrying the cursor for the next keyset page, absent on the last page
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Newline-delimited JSON: one Message object per line
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    // RFC 7240 preference asking PATCH to answer with the updated Message instead of the row count
+    public static final String PREFER_RETURN_REPRESENTATION = "return=representation";
+
     @Autowired
     private AccountService accountService;
     
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private MessageVersions messageVersions;
+
+    @Autowired
+    private MessageJsonCache messageJsonCache;
+
 
     /**
      * Handler for POST localhost:8080/register.
@@ -64,12 +94,79 @@ import com.example.service.MessageService;
     }
 
     /**
-     * Handler for GET localhost:8080/messages
+     * Handler for POST localhost:8080/messages/batch
+     */
+    @PostMapping("messages/batch")
+    public ResponseEntity<List<MessageBatchResult>> createMessages(@RequestBody List<Message> messages) {
+        return ResponseEntity.ok()
+                .body(messageService.createMessages(messages));
+    }
+
+    /**
+     * Handler for GET localhost:8080/messages?after={message_id}&limit={limit}, and for
+     * GET localhost:8080/messages?since={epoch}&until={epoch}&before={cursor}&limit={limit}, newest first.
+     * Answers 304 without reading any message if If-None-Match holds the current ETag.
      */
     @GetMapping("messages")
-    public ResponseEntity<List<Message>> getMessages() {
+    public ResponseEntity<List<Message>> getMessages(@RequestParam(required = false) Integer after,
+                                                     @RequestParam(required = false) Long since,
+                                                     @RequestParam(required = false) Long until,
+                                                     @RequestParam(required = false) String before,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     WebRequest request) {
+        if (isTimeRange(after, since, until, before)) {
+            if (request.checkNotModified(messageVersions.messagesTag(since, until, before, limit))) {
+                return null;
+            }
+            return timeRangePage(messageService.getMessagesBetween(since, until, before, limit));
+        }
+
+        if (request.checkNotModified(messageVersions.messagesTag(after, limit))) {
+            return null;
+        }
+        return page(messageService.getMessages(after, limit));
+    }
+
+    /**
+     * Handler for GET localhost:8080/messages with Accept: application/x-ndjson.
+     * Streams every message as one JSON object per line without holding the full list in memory, copying each
+     * message's JSON from the MessageJsonCache.
+     */
+    @GetMapping(value = "messages", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMessages() {
+        StreamingResponseBody body = output -> messageService.streamMessages(message -> {
+            try {
+                output.write(messageJsonCache.get(message));
+                output.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
         return ResponseEntity.ok()
-                .body(messageService.getMessages());
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Handler for GET localhost:8080/messages/search?q={words}&after={cursor}&limit={limit}
+     */
+    @GetMapping("messages/search")
+    public ResponseEntity<List<Message>> searchMessages(@RequestParam String q,
+                                                        @RequestParam(required = false) Integer after,
+                                                        @RequestParam(required = false) Integer limit) {
+        MessageSearchPage page = messageService.searchMessages(q, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        page.getNextCursor().ifPresent(cursor -> response.header(NEXT_CURSOR_HEADER, String.valueOf(cursor)));
+        return response.body(page.getMessages());
+    }
+
+    /**
+     * Handler for GET localhost:8080/messages/stats
+     */
+    @GetMapping("messages/stats")
+    public ResponseEntity<MessageStats> getMessageStats() {
+        return ResponseEntity.ok().body(messageService.getMessageStats());
     }
 
     /**
@@ -112,10 +209,89 @@ import com.example.service.MessageService;
     }
 
     /**
-     * Handler for GET localhost:8080/accounts/{account_id}/messages
+     * Handler for PATCH localhost:8080/messages/{message_id} with Prefer: return=representation.
+     * Responds with the updated Message, read back by the UPDATE statement itself.
+     */
+    @PatchMapping(value = "messages/{message_id}", headers = "Prefer=" + PREFER_RETURN_REPRESENTATION)
+    public ResponseEntity<Message> updateMessageReturningRepresentation(@PathVariable int message_id, @RequestBody Message message) {
+        return ResponseEntity.ok()
+                .header("Preference-Applied", PREFER_RETURN_REPRESENTATION)
+                .body(messageService.updateAndGetMessage(message_id, message.getMessageText()));
+    }
+
+    /**
+     * Handler for GET localhost:8080/accounts/{account_id}/messages?after={message_id}&limit={limit}, and for
+     * GET localhost:8080/accounts/{account_id}/messages?since={epoch}&until={epoch}&before={cursor}&limit={limit},
+     * newest first. Answers 304 without reading any message if If-None-Match holds the current ETag.
      */
     @GetMapping("accounts/{account_id}/messages")
-    public ResponseEntity<List<Message>> getMessagesFromAccount(@PathVariable int account_id) {
-        return ResponseEntity.ok().body(messageService.getAllMessagesFromUser(account_id));
+    public ResponseEntity<List<Message>> getMessagesFromAccount(@PathVariable int account_id,
+                                                                @RequestParam(required = false) Integer after,
+                                                                @RequestParam(required = false) Long since,
+                                                                @RequestParam(required = false) Long until,
+                                                                @RequestParam(required = false) String before,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                WebRequest request) {
+        if (isTimeRange(after, since, until, before)) {
+            if (request.checkNotModified(messageVersions.accountMessagesTag(account_id, since, until, before, limit))) {
+                return null;
+            }
+            return timeRangePage(messageService.getMessagesFromUserBetween(account_id, since, until, before, limit));
+        }
+
+        if (request.checkNotModified(messageVersions.accountMessagesTag(account_id, after, limit))) {
+            return null;
+        }
+        return page(messageService.getAllMessagesFromUser(account_id, after, limit));
+    }
+
+    /**
+     * Handler for GET localhost:8080/accounts/{account_id}/stats
+     */
+    @GetMapping("accounts/{account_id}/stats")
+    public ResponseEntity<MessageStats> getAccountStats(@PathVariable int account_id) {
+        Optional<MessageStats> stats = messageService.getAccountStats(account_id);
+
+        if (stats.isPresent()) {
+            return ResponseEntity.ok().body(stats.get());
+        } else {
+            return ResponseEntity.ok().build();
+        }
+    }
+
+    /**
+     * Tells a time range request from a keyset page request, which page in opposite orders and cannot be mixed.
+     */
+    private boolean isTimeRange(Integer after, Long since, Long until, String before) throws InvalidPageRequestException {
+        boolean timeRange = since != null || until != null || before != null;
+        if (timeRange && after != null) {
+            throw new InvalidPageRequestException("A time range pages with before, not after.");
+        }
+        return timeRange;
+    }
+
+    /**
+     * Builds the response for one keyset page, adding the next cursor header when more messages remain.
+     */
+    private ResponseEntity<List<Message>> page(Slice<Message> slice) {
+        return page(slice, last -> String.valueOf(last.getMessageId()));
+    }
+
+    /**
+     * Builds the response for one time range page, whose cursor needs the time of the last message as well as its id.
+     */
+    private ResponseEntity<List<Message>> timeRangePage(Slice<Message> slice) {
+        return page(slice, last -> TimeRangeCursor.after(last).toString());
+    }
+
+    private ResponseEntity<List<Message>> page(Slice<Message> slice, Function<Message, String> cursor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        List<Message> messages = slice.getContent();
+
+        if (slice.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, cursor.apply(messages.get(messages.size() - 1)));
+        }
+
+        return response.body(messages);
     }
 }
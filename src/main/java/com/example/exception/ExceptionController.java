@@ -1,39 +1,81 @@
 package com.example.exception;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @RestControllerAdvice
 public class ExceptionController {
+    // Counter of handled exceptions, tagged with the exception class
+    public static final String METRIC_NAME = "socialmedia.exceptions";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @ExceptionHandler(DuplicateUsernameException.class)
     @ResponseStatus(HttpStatus.CONFLICT)
     public String handleDuplicateUsername(DuplicateUsernameException e) {
+        count(e);
         return e.getMessage();
     }
 
     @ExceptionHandler(AccountRegistrationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleUnsuccessfulAccountRegistration(AccountRegistrationException e) {
+        count(e);
         return e.getMessage();
     }
 
     @ExceptionHandler(AuthenticationException.class)
     @ResponseStatus(HttpStatus.UNAUTHORIZED)
     public String handleUnsuccessfulLogin(AuthenticationException e) {
+        count(e);
         return e.getMessage();
     }
 
     @ExceptionHandler(MessageCreationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleUnsuccessfulMessageCreation(MessageCreationException e) {
+        count(e);
         return e.getMessage();
     }
 
     @ExceptionHandler(MessageNotFoundException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleMessageNotFound(MessageNotFoundException e) {
+        count(e);
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleInvalidPageRequest(InvalidPageRequestException e) {
+        count(e);
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(InvalidSearchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleInvalidSearch(InvalidSearchException e) {
+        count(e);
+        return e.getMessage();
+    }
+
+    @ExceptionHandler(SearchUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String handleSearchUnavailable(SearchUnavailableException e) {
+        count(e);
         return e.getMessage();
     }
+
+    /**
+     * Counts a handled exception under socialmedia.exceptions
+     */
+    private void count(RuntimeException e) {
+        meterRegistry.counter(METRIC_NAME, "exception", e.getClass().getSimpleName()).increment();
+    }
 }
@@ -0,0 +1,106 @@
+package com.example.id;
+
+import java.io.Serializable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import com.example.entity.Message;
+
+/**
+ * Sequence-backed id generator that reserves ids in blocks. Each entity gets its own sequence, named after it
+ * (message_seq, account_seq), which advances by socialmedia.id.block-size per call; Hibernate's pooled optimizer
+ * then hands out the ids in between from memory, so only one insert in block-size pays a sequence round trip.
+ *
+ * Ids from socialmedia.id.reserved-from to socialmedia.id.reserved-to are never generated. They belong to rows
+ * that data.sql inserts with explicit ids, and generating them would fail the insert with a key violation.
+ *
+ * With socialmedia.id.shards above 1, set by ShardingConfiguration, Message ids also encode the shard the Message is
+ * stored on: messageId mod shards is the shard, postedBy mod shards, so a Message can be found from its id alone.
+ * Every shard then has its own message_seq, and each shard's ids come from a generator of their own, so that a
+ * pooled block is only ever drawn from one sequence.
+ *
+ * All settings are Hibernate properties, so they are set as spring.jpa.properties.socialmedia.id.*.
+ */
+public class PooledIdGenerator extends SequenceStyleGenerator {
+    public static final String BLOCK_SIZE = "socialmedia.id.block-size";
+    public static final String RESERVED_FROM = "socialmedia.id.reserved-from";
+    public static final String RESERVED_TO = "socialmedia.id.reserved-to";
+    public static final String SHARDS = "socialmedia.id.shards";
+
+    private static final int DEFAULT_BLOCK_SIZE = 50;
+
+    private long reservedFrom;
+    private long reservedTo;
+    private int shards;
+    // One generator per shard for Message ids with sharding, otherwise null
+    private SequenceStyleGenerator[] shardGenerators;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        reservedFrom = ConfigurationHelper.getInt(RESERVED_FROM, settings, 0);
+        reservedTo = ConfigurationHelper.getInt(RESERVED_TO, settings, -1);
+
+        params.putIfAbsent(SEQUENCE_PARAM, params.getProperty(IdentifierGenerator.JPA_ENTITY_NAME).toLowerCase(Locale.ROOT) + "_seq");
+        params.putIfAbsent(INCREMENT_PARAM, String.valueOf(ConfigurationHelper.getInt(BLOCK_SIZE, settings, DEFAULT_BLOCK_SIZE)));
+        shards = ConfigurationHelper.getInt(SHARDS, settings, 1);
+        if (shards > 1 && Message.class.getName().equals(params.getProperty(IdentifierGenerator.ENTITY_NAME))) {
+            shardGenerators = new SequenceStyleGenerator[shards];
+            for (int shard = 0; shard < shards; shard++) {
+                shardGenerators[shard] = new SequenceStyleGenerator();
+                shardGenerators[shard].configure(type, (Properties) params.clone(), serviceRegistry);
+            }
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public void registerExportables(Database database) {
+        super.registerExportables(database);
+        if (shardGenerators != null) {
+            for (SequenceStyleGenerator shardGenerator : shardGenerators) {
+                shardGenerator.registerExportables(database);
+            }
+        }
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        if (shardGenerators != null) {
+            return generateForShard(session, Math.floorMod(((Message) object).getPostedBy(), shards), object);
+        }
+
+        Serializable id;
+        do {
+            id = super.generate(session, object);
+        } while (isReserved(((Number) id).longValue()));
+        return id;
+    }
+
+    /**
+     * @return the next id of a Message on shard; the session must be connected to that shard
+     */
+    private Serializable generateForShard(SharedSessionContractImplementor session, int shard, Object object) {
+        long id;
+        do {
+            id = ((Number) shardGenerators[shard].generate(session, object)).longValue() * shards + shard;
+        } while (isReserved(id));
+        return Math.toIntExact(id);
+    }
+
+    private boolean isReserved(long id) {
+        return reservedFrom <= id && id <= reservedTo;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.id;
+
+import javax.persistence.GenerationType;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.TableGenerator;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.model.IdGeneratorStrategyInterpreter;
+import org.hibernate.boot.model.IdentifierGeneratorDefinition;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+
+/**
+ * Makes {@link PooledIdGenerator} the generator behind @GeneratedValue(strategy = AUTO) for numeric ids, which
+ * covers Message and Account without changing their mappings. Registered through
+ * hibernate.metadata_builder_contributor; every other strategy keeps Hibernate's default interpretation.
+ */
+public class PooledIdGeneratorContributor implements MetadataBuilderContributor, IdGeneratorStrategyInterpreter {
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applyIdGenerationTypeInterpreter(this);
+    }
+
+    @Override
+    public String determineGeneratorName(GenerationType generationType, GeneratorNameDeterminationContext context) {
+        if (generationType == GenerationType.AUTO && Number.class.isAssignableFrom(context.getIdType())) {
+            return PooledIdGenerator.class.getName();
+        }
+        return null;
+    }
+
+    @Override
+    public void interpretTableGenerator(TableGenerator tableGeneratorAnnotation, IdentifierGeneratorDefinition.Builder definitionBuilder) {
+    }
+
+    @Override
+    public void interpretSequenceGenerator(SequenceGenerator sequenceGeneratorAnnotation, IdentifierGeneratorDefinition.Builder definitionBuilder) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.index;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+
+import com.example.cache.TransactionCallbacks;
+import com.example.repository.AccountRepository;
+
+/**
+ * In-memory set of every accountId, held in a compressed bitmap, so that message validation can check that an
+ * Account exists without a database round trip.
+ *
+ * The index is loaded once the database has been initialized and {@link #add(int)} keeps it current as Accounts
+ * are registered. Accounts are never deleted, so a hit is always correct. A miss falls back to the database, which
+ * covers Accounts inserted without going through AccountService.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class AccountIdIndex {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    private final RoaringBitmap accountIds = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Loads every existing accountId into the index
+     */
+    @PostConstruct
+    public void load() {
+        RoaringBitmap loaded = RoaringBitmap.bitmapOf(accountRepository.findAllAccountIds().stream().mapToInt(Integer::intValue).toArray());
+        loaded.runOptimize();
+
+        lock.writeLock().lock();
+        try {
+            accountIds.clear();
+            accountIds.or(loaded);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether an Account exists, querying the database only if the index does not contain it
+     * @param accountId the ID of the Account
+     * @return true if the Account exists
+     */
+    public boolean exists(int accountId) {
+        if (contains(accountId)) {
+            return true;
+        }
+
+        if (accountRepository.existsById(accountId)) {
+            addNow(accountId);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks which of several Accounts exist, querying the database once for all the IDs the index does not contain
+     * @param accountIds the IDs of the Accounts
+     * @return the subset of accountIds that exist
+     */
+    public Set<Integer> existing(Collection<Integer> accountIds) {
+        Set<Integer> existing = new HashSet<>();
+        Set<Integer> missing = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for (int accountId : accountIds) {
+                (this.accountIds.contains(accountId) ? existing : missing).add(accountId);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (!missing.isEmpty()) {
+            List<Integer> found = accountRepository.findExistingAccountIds(missing);
+            found.forEach(this::addNow);
+            existing.addAll(found);
+        }
+
+        return existing;
+    }
+
+    /**
+     * Adds a newly registered Account to the index once the current transaction commits
+     * @param accountId the ID of the new Account
+     */
+    public void add(int accountId) {
+        TransactionCallbacks.afterCommit(() -> addNow(accountId));
+    }
+
+    /**
+     * @return the number of accountIds in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return accountIds.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean contains(int accountId) {
+        lock.readLock().lock();
+        try {
+            return accountIds.contains(accountId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addNow(int accountId) {
+        lock.writeLock().lock();
+        try {
+            accountIds.add(accountId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.index;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.cache.TransactionCallbacks;
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+
+/**
+ * In-memory message counts and first and last timePostedEpoch, per Account and over all messages, so that the stats
+ * endpoints never count rows.
+ *
+ * The write paths apply exact deltas once they commit: the total is a striped LongAdder, and each Account's stats are
+ * an immutable entry replaced atomically. A new message can only move its author's first or last time outward, but
+ * deleting the first or last message leaves the new end unknown. The range is then marked stale and read back from
+ * the (postedBy, timePostedEpoch) index when it is next asked for.
+ *
+ * {@link #reconcile()} replaces the maintained values with a GROUP BY over the message table, at startup and on
+ * demand. Values read from the database are only kept where no write overlapped the read. To tell, every write marks
+ * itself in flight on a stripe of its author's accountId from before it reaches the database until its transaction
+ * completes, see {@link #writing(int)}. Accounts on a stripe that was busy keep their maintained stats.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class MessageCounters {
+    private static final Logger log = LoggerFactory.getLogger(MessageCounters.class);
+
+    private static final int STRIPES = 1024;
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<Integer, Stats> accounts = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+    private final AtomicReference<Range> range = new AtomicReference<>(Range.EMPTY);
+
+    private final AtomicIntegerArray inFlight = new AtomicIntegerArray(STRIPES);
+    private final AtomicLongArray started = new AtomicLongArray(STRIPES);
+
+    @PostConstruct
+    public void initialize() {
+        long start = System.nanoTime();
+        Reconciliation reconciliation = reconcile();
+        log.info("Counted the messages of {} accounts in {} ms", reconciliation.getCorrected(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Marks a write of a Message by postedBy as in flight until the current transaction completes. Must be called
+     * before the write reaches the database.
+     */
+    public void writing(int postedBy) {
+        begin(stripe(postedBy));
+    }
+
+    /**
+     * Counts a created Message once the current transaction commits
+     * @param message the persisted Message
+     */
+    public void added(Message message) {
+        int postedBy = message.getPostedBy();
+        Long timePostedEpoch = message.getTimePostedEpoch();
+        TransactionCallbacks.afterCommit(() -> {
+            count.increment();
+            range.updateAndGet(current -> current.with(timePostedEpoch));
+            accounts.compute(postedBy, (accountId, stats) -> (stats == null ? Stats.EMPTY : stats).plus(timePostedEpoch));
+        });
+    }
+
+    /**
+     * Uncounts a deleted Message once the current transaction commits
+     * @param message the deleted Message
+     */
+    public void removed(Message message) {
+        int postedBy = message.getPostedBy();
+        Long timePostedEpoch = message.getTimePostedEpoch();
+        TransactionCallbacks.afterCommit(() -> {
+            count.decrement();
+            range.updateAndGet(current -> current.without(timePostedEpoch));
+            accounts.computeIfPresent(postedBy, (accountId, stats) -> stats.minus(timePostedEpoch));
+        });
+    }
+
+    /**
+     * @return the stats of one Account, all zero and null if it has no messages
+     */
+    public MessageStats account(int accountId) {
+        Stats stats = accounts.getOrDefault(accountId, Stats.EMPTY);
+        Range accountRange = stats.range.stale ? refreshRange(accountId) : stats.range;
+        return new MessageStats(stats.count, accountRange.first, accountRange.last);
+    }
+
+    /**
+     * @return the stats of all messages
+     */
+    public MessageStats all() {
+        Range allRange = range.get();
+        if (allRange.stale) {
+            allRange = refreshRange();
+        }
+        return new MessageStats(count.sum(), allRange.first, allRange.last);
+    }
+
+    /**
+     * Replaces the maintained stats with those in the database, except for Accounts that a write overlapped
+     * @return how many Accounts were corrected and how many were skipped
+     */
+    public synchronized Reconciliation reconcile() {
+        long[] before = new long[STRIPES];
+        boolean[] busy = new boolean[STRIPES];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            before[stripe] = started.get(stripe);
+            busy[stripe] = inFlight.get(stripe) > 0;
+        }
+
+        Map<Integer, Stats> loaded = new HashMap<>();
+        Range loadedRange = Range.EMPTY;
+        for (Object[] row : read(() -> messageStore.countAllGroupByPostedBy())) {
+            Range accountRange = new Range((Long) row[2], (Long) row[3], false);
+            loaded.put((Integer) row[0], new Stats((Long) row[1], accountRange));
+            loadedRange = loadedRange.with(accountRange.first).with(accountRange.last);
+        }
+
+        boolean anyBusy = false;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            busy[stripe] |= started.get(stripe) != before[stripe];
+            anyBusy |= busy[stripe];
+        }
+
+        Set<Integer> accountIds = new HashSet<>(accounts.keySet());
+        accountIds.addAll(loaded.keySet());
+        int[] corrected = new int[1];
+        int[] skipped = new int[1];
+        long[] correction = new long[1];
+        for (int accountId : accountIds) {
+            int stripe = stripe(accountId);
+            Stats reconciled = loaded.get(accountId);
+            accounts.compute(accountId, (id, current) -> {
+                // A write that started after the read is not in its values, but may have applied its delta since;
+                // deltas wait for compute, so an unchanged start count in here proves that it has not
+                if (busy[stripe] || started.get(stripe) != before[stripe]) {
+                    skipped[0]++;
+                    return current;
+                }
+                Stats maintained = current == null ? Stats.EMPTY : current;
+                Stats actual = reconciled == null ? Stats.EMPTY : reconciled;
+                if (!actual.equals(maintained)) {
+                    corrected[0]++;
+                    correction[0] += actual.count - maintained.count;
+                }
+                return reconciled;
+            });
+        }
+        count.add(correction[0]);
+
+        if (!anyBusy) {
+            Range reconciledRange = loadedRange;
+            range.updateAndGet(current -> quiet(before) ? reconciledRange : current);
+        }
+        return new Reconciliation(corrected[0], skipped[0]);
+    }
+
+    /**
+     * Runs a query in a read-write transaction, so that with a read replica it reads the primary the writes go to
+     */
+    private <T> T read(Supplier<T> query) {
+        return new TransactionTemplate(transactionManager).execute(status -> query.get());
+    }
+
+    private void begin(int stripe) {
+        // In flight before started, so that a reader that sees the new start count also sees it in flight
+        inFlight.incrementAndGet(stripe);
+        started.incrementAndGet(stripe);
+        TransactionCallbacks.afterCompletion(() -> inFlight.decrementAndGet(stripe));
+    }
+
+    /**
+     * Reads an Account's range from the database, keeping it unless a write overlapped the read
+     */
+    private Range refreshRange(int accountId) {
+        int stripe = stripe(accountId);
+        long before = started.get(stripe);
+        boolean busy = inFlight.get(stripe) > 0;
+
+        Object[] row = read(() -> messageStore.findTimePostedRangeByPostedBy(accountId)).get(0);
+        Range refreshed = new Range((Long) row[0], (Long) row[1], false);
+
+        if (!busy) {
+            accounts.computeIfPresent(accountId, (id, stats) ->
+                    started.get(stripe) == before ? stats.withRange(refreshed) : stats);
+        }
+        return refreshed;
+    }
+
+    /**
+     * Reads the range of all messages from the database, keeping it unless a write overlapped the read
+     */
+    private Range refreshRange() {
+        long[] before = new long[STRIPES];
+        boolean busy = false;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            before[stripe] = started.get(stripe);
+            busy |= inFlight.get(stripe) > 0;
+        }
+
+        Object[] row = read(() -> messageStore.findTimePostedRange()).get(0);
+        Range refreshed = new Range((Long) row[0], (Long) row[1], false);
+
+        if (!busy) {
+            range.updateAndGet(current -> quiet(before) ? refreshed : current);
+        }
+        return refreshed;
+    }
+
+    /**
+     * @return true if no write has started on any stripe since before was read
+     */
+    private boolean quiet(long[] before) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            if (started.get(stripe) != before[stripe]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int stripe(int accountId) {
+        return (accountId ^ (accountId >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * The outcome of {@link #reconcile()}
+     */
+    public static class Reconciliation {
+        private final int corrected;
+        private final int skipped;
+
+        Reconciliation(int corrected, int skipped) {
+            this.corrected = corrected;
+            this.skipped = skipped;
+        }
+
+        /**
+         * @return the number of Accounts whose maintained stats differed from the database and were replaced
+         */
+        public int getCorrected() {
+            return corrected;
+        }
+
+        /**
+         * @return the number of Accounts left as they were because a write overlapped the reconciliation
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * The first and last timePostedEpoch of a set of messages; stale if an end may no longer exist
+     */
+    private static final class Range {
+        private static final Range EMPTY = new Range(null, null, false);
+
+        private final Long first;
+        private final Long last;
+        private final boolean stale;
+
+        private Range(Long first, Long last, boolean stale) {
+            this.first = first;
+            this.last = last;
+            this.stale = stale;
+        }
+
+        private Range with(Long timePostedEpoch) {
+            if (timePostedEpoch == null) {
+                return this;
+            }
+            return new Range(first == null || timePostedEpoch < first ? timePostedEpoch : first,
+                    last == null || timePostedEpoch > last ? timePostedEpoch : last, stale);
+        }
+
+        private Range without(Long timePostedEpoch) {
+            boolean end = timePostedEpoch != null && (timePostedEpoch.equals(first) || timePostedEpoch.equals(last));
+            return end ? new Range(first, last, true) : this;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Range)) {
+                return false;
+            }
+            Range range = (Range) other;
+            return Objects.equals(first, range.first) && Objects.equals(last, range.last) && stale == range.stale;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(first, last, stale);
+        }
+    }
+
+    /**
+     * The message count and range of one Account
+     */
+    private static final class Stats {
+        private static final Stats EMPTY = new Stats(0, Range.EMPTY);
+
+        private final long count;
+        private final Range range;
+
+        private Stats(long count, Range range) {
+            this.count = count;
+            this.range = range;
+        }
+
+        private Stats plus(Long timePostedEpoch) {
+            return new Stats(count + 1, range.with(timePostedEpoch));
+        }
+
+        /**
+         * @return the Stats without one message, or null once none are left
+         */
+        private Stats minus(Long timePostedEpoch) {
+            return count <= 1 ? null : new Stats(count - 1, range.without(timePostedEpoch));
+        }
+
+        private Stats withRange(Range range) {
+            return new Stats(count, range);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Stats)) {
+                return false;
+            }
+            Stats stats = (Stats) other;
+            return count == stats.count && range.equals(stats.range);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(count, range);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.index;
+
+/**
+ * The message count and the first and last timePostedEpoch of one Account's messages, or of all messages, as
+ * returned by GET /accounts/{accountId}/stats and GET /messages/stats. The times are null without messages.
+ */
+public class MessageStats {
+    private final long messageCount;
+    private final Long firstTimePostedEpoch;
+    private final Long lastTimePostedEpoch;
+
+    public MessageStats(long messageCount, Long firstTimePostedEpoch, Long lastTimePostedEpoch) {
+        this.messageCount = messageCount;
+        this.firstTimePostedEpoch = firstTimePostedEpoch;
+        this.lastTimePostedEpoch = lastTimePostedEpoch;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public Long getFirstTimePostedEpoch() {
+        return firstTimePostedEpoch;
+    }
+
+    public Long getLastTimePostedEpoch() {
+        return lastTimePostedEpoch;
+    }
+}
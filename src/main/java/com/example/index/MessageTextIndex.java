@@ -0,0 +1,367 @@
+package com.example.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.cache.TransactionCallbacks;
+import com.example.entity.Message;
+import com.example.repository.MessageStore;
+
+/**
+ * In-memory inverted index of message text: every term maps to a compressed bitmap of the messageIds whose text
+ * contains it. Text is split into terms at every character that is not a letter or digit, and lower-cased.
+ *
+ * Matches are ranked by the summed BM25 inverse document frequency of the query terms each message contains, so
+ * rarer terms weigh more, and newer messages first among equal scores.
+ *
+ * The index is loaded once the database has been initialized and kept current after each commit: created
+ * Messages are added, deleted ones removed, and updated ones swap the terms of their old text for those of the new.
+ * A search can still run between a commit and its index change, so callers check each hit against the stored text
+ * with {@link #matches(Message, List)}.
+ *
+ * With socialmedia.search.load-in-background=true the load runs on its own thread, so startup does not wait for
+ * a scan of the whole message table. Writes keep being applied meanwhile, and the loaded postings are merged in
+ * at the end. The load may have read text that a later write replaced, so the terms that writes took away while it
+ * ran are taken away again after the merge. Until then {@link #isLoaded()} is false and the index must not be
+ * searched.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class MessageTextIndex {
+    private static final Logger log = LoggerFactory.getLogger(MessageTextIndex.class);
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${socialmedia.search.load-in-background:false}")
+    private boolean loadInBackground;
+
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+    private final RoaringBitmap messageIds = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    // Terms taken away by writes committed while a load runs, by messageId, taken away again once its postings are
+    // merged; null when no load runs
+    private Map<Integer, Removal> removedWhileLoading;
+
+    /**
+     * Splits text into its distinct terms, in order of first appearance
+     * @param text the message text or search query
+     * @return the lower-cased terms, empty for blank text
+     */
+    public static List<String> terms(String text) {
+        if (text == null) {
+            return List.of();
+        }
+
+        Set<String> terms = new LinkedHashSet<>();
+        StringBuilder term = new StringBuilder();
+        text.toLowerCase(Locale.ROOT).codePoints().forEach(codePoint -> {
+            if (Character.isLetterOrDigit(codePoint)) {
+                term.appendCodePoint(codePoint);
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        });
+        if (term.length() > 0) {
+            terms.add(term.toString());
+        }
+        return new ArrayList<>(terms);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!loadInBackground) {
+            load();
+            return;
+        }
+
+        Thread loader = new Thread(() -> {
+            try {
+                load();
+            } catch (RuntimeException e) {
+                log.error("Could not load the message text index; search stays unavailable", e);
+            }
+        }, "message-text-index-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Indexes the text of every existing message, merging it into the current contents of the index
+     */
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            removedWhileLoading = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        Map<String, RoaringBitmap> loadedPostings = new HashMap<>();
+        RoaringBitmap loadedMessageIds = new RoaringBitmap();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try (Stream<Object[]> texts = messageStore.streamAllMessageTexts()) {
+                texts.forEach(row -> {
+                    int messageId = (Integer) row[0];
+                    loadedMessageIds.add(messageId);
+                    for (String term : terms((String) row[1])) {
+                        loadedPostings.computeIfAbsent(term, t -> new RoaringBitmap()).add(messageId);
+                    }
+                });
+            }
+        });
+        loadedPostings.values().forEach(RoaringBitmap::runOptimize);
+
+        lock.writeLock().lock();
+        try {
+            loadedPostings.forEach((term, list) -> postings.merge(term, list, (live, loadedList) -> RoaringBitmap.or(live, loadedList)));
+            messageIds.or(loadedMessageIds);
+            removedWhileLoading.forEach((messageId, removal) -> {
+                if (removal.deleted) {
+                    messageIds.remove(messageId);
+                }
+                removePostings(messageId, removal.terms);
+            });
+            removedWhileLoading = null;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed the text of {} messages in {} ms", loadedMessageIds.getCardinality(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @return true once the first load has finished; before that, searches would miss existing messages
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Adds a created Message once the current transaction commits
+     * @param message the Message as it now exists in the database
+     */
+    public void add(Message message) {
+        int messageId = message.getMessageId();
+        List<String> terms = terms(message.getMessageText());
+        TransactionCallbacks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                addPostings(messageId, terms);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Replaces the terms of an updated Message once the current transaction commits
+     * @param previous the Message as it was before the update
+     * @param message the Message as it now exists in the database
+     */
+    public void update(Message previous, Message message) {
+        int messageId = message.getMessageId();
+        List<String> terms = terms(message.getMessageText());
+        List<String> stale = terms(previous.getMessageText());
+        stale.removeAll(terms);
+        TransactionCallbacks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                addPostings(messageId, terms);
+                removePostings(messageId, stale);
+                if (removedWhileLoading != null) {
+                    removedWhileLoading.computeIfAbsent(messageId, id -> new Removal()).terms.addAll(stale);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Removes a deleted Message once the current transaction commits
+     * @param message the Message as it was deleted
+     */
+    public void remove(Message message) {
+        int messageId = message.getMessageId();
+        List<String> terms = terms(message.getMessageText());
+        TransactionCallbacks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                messageIds.remove(messageId);
+                removePostings(messageId, terms);
+                if (removedWhileLoading != null) {
+                    Removal removal = removedWhileLoading.computeIfAbsent(messageId, id -> new Removal());
+                    removal.deleted = true;
+                    removal.terms.addAll(terms);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Lists the matches of a query in rank order, without checking them against the stored text
+     * @param terms the query terms, see {@link #terms(String)}
+     * @param from the rank of the first match to return, starting at 0
+     * @param count the maximum number of matches to return
+     * @return the messageIds ranked from to from + count - 1, fewer if the matches run out
+     */
+    public List<Integer> search(List<String> terms, int from, int count) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap[] lists = new RoaringBitmap[terms.size()];
+            double[] weights = new double[terms.size()];
+            int documents = messageIds.getCardinality();
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.getOrDefault(terms.get(i), new RoaringBitmap());
+                int frequency = lists[i].getCardinality();
+                weights[i] = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+            }
+
+            // Every message matches exactly one non-empty subset of the terms, and scores the sum of its weights
+            int[] subsets = IntStream.range(1, 1 << lists.length)
+                    .boxed()
+                    .sorted(Comparator.comparingDouble((Integer subset) -> score(subset, weights)).reversed())
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            List<Integer> ranked = new ArrayList<>(count);
+            int skip = from;
+            for (int subset : subsets) {
+                if (ranked.size() == count) {
+                    break;
+                }
+
+                RoaringBitmap group = matchingExactly(subset, lists);
+                int size = group.getCardinality();
+                if (skip >= size) {
+                    skip -= size;
+                    continue;
+                }
+
+                // Newest first: rank r within the group is the r-th largest messageId
+                for (int rank = skip; rank < size && ranked.size() < count; rank++) {
+                    ranked.add(group.select(size - 1 - rank));
+                }
+                skip = 0;
+            }
+            return ranked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param message a Message found through {@link #search(List, int, int)}, as stored in the database
+     * @param terms the query terms
+     * @return true if the stored text contains at least one of the terms, false if a write that has committed but
+     *         not yet reached the index took them away
+     */
+    public boolean matches(Message message, List<String> terms) {
+        List<String> messageTerms = terms(message.getMessageText());
+        return terms.stream().anyMatch(messageTerms::contains);
+    }
+
+    /**
+     * @return the number of distinct terms in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addPostings(int messageId, List<String> terms) {
+        messageIds.add(messageId);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(messageId);
+        }
+        // Terms written back after being taken away during a load must survive its merge
+        if (removedWhileLoading != null && removedWhileLoading.containsKey(messageId)) {
+            removedWhileLoading.get(messageId).terms.removeAll(terms);
+        }
+    }
+
+    private void removePostings(int messageId, Collection<String> terms) {
+        for (String term : terms) {
+            RoaringBitmap list = postings.get(term);
+            if (list != null) {
+                list.remove(messageId);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static final class Removal {
+        private final Set<String> terms = new HashSet<>();
+        private boolean deleted;
+    }
+
+    private static double score(int subset, double[] weights) {
+        double score = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if ((subset & (1 << i)) != 0) {
+                score += weights[i];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return the messageIds that contain every term in subset and no other query term
+     */
+    private static RoaringBitmap matchingExactly(int subset, RoaringBitmap[] lists) {
+        RoaringBitmap group = null;
+        for (int i = 0; i < lists.length; i++) {
+            if ((subset & (1 << i)) != 0) {
+                group = group == null ? lists[i].clone() : RoaringBitmap.and(group, lists[i]);
+            }
+        }
+        for (int i = 0; i < lists.length && !group.isEmpty(); i++) {
+            if ((subset & (1 << i)) == 0) {
+                group.andNot(lists[i]);
+            }
+        }
+        return group;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.stereotype.Component;
+
+import com.example.repository.AccountRepository;
+
+/**
+ * Bloom filter over every registered username, so that registration can skip the availability query for
+ * usernames that are certainly new.
+ *
+ * {@link #mightContain(String)} never returns false for a username that has been added, but may return true for
+ * one that has not (at roughly the configured false-positive probability once expectedInsertions usernames are
+ * present). The unique constraint on account.username remains the final authority. The bits live in an
+ * AtomicLongArray, so lookups and additions never block.
+ */
+@Component
+@DependsOnDatabaseInitialization
+public class UsernameFilter {
+    @Autowired
+    private AccountRepository accountRepository;
+
+    private final boolean enabled;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    public UsernameFilter(@Value("${socialmedia.accounts.username-filter.enabled:true}") boolean enabled,
+                          @Value("${socialmedia.accounts.username-filter.expected-insertions:1000000}") long expectedInsertions,
+                          @Value("${socialmedia.accounts.username-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.enabled = enabled;
+        this.bits = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+        this.bitCount = this.bits.length() * 64L;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds every existing username to the filter
+     */
+    @PostConstruct
+    public void load() {
+        if (enabled) {
+            accountRepository.findAllUsernames().forEach(this::put);
+        }
+    }
+
+    /**
+     * @param username the username in question
+     * @return false only if no Account has this username; true if one might
+     */
+    public boolean mightContain(String username) {
+        if (!enabled) {
+            return true;
+        }
+
+        long hash = hash(username);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(hash1 + i * hash2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records a username as taken
+     * @param username the username of a new Account
+     */
+    public void put(String username) {
+        if (!enabled) {
+            return;
+        }
+
+        long hash = hash(username);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = index(hash1 + i * hash2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    private long index(int combinedHash) {
+        return (combinedHash & 0x7fffffffL) % bitCount;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so both halves are well distributed
+     */
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import com.example.index.MessageCounters;
+import com.example.index.MessageStats;
+
+/**
+ * The messagestats actuator endpoint. GET /actuator/messagestats shows the maintained stats of all messages, and
+ * POST /actuator/messagestats reconciles every Account's stats against the database, see
+ * {@link MessageCounters#reconcile()}. Like every actuator endpoint it is served on management.server.port, not on
+ * the API port, since a reconciliation reads the whole message table.
+ */
+@Component
+@Endpoint(id = "messagestats")
+public class MessageStatsEndpoint {
+    private final MessageCounters messageCounters;
+
+    public MessageStatsEndpoint(MessageCounters messageCounters) {
+        this.messageCounters = messageCounters;
+    }
+
+    @ReadOperation
+    public MessageStats stats() {
+        return messageCounters.all();
+    }
+
+    @WriteOperation
+    public MessageCounters.Reconciliation reconcile() {
+        return messageCounters.reconcile();
+    }
+}
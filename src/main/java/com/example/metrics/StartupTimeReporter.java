@@ -0,0 +1,39 @@
+package com.example.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * Logs and publishes, as socialmedia.startup.ready, the time from JVM start until the application is ready to
+ * serve requests: the database initialized or opened, and every index loaded that startup waits for.
+ */
+@Component
+public class StartupTimeReporter implements ApplicationListener<ApplicationReadyEvent> {
+    public static final String METRIC_NAME = "socialmedia.startup.ready";
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeReporter.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public StartupTimeReporter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        long readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("Ready to serve requests {} ms after JVM start", readyMillis);
+        TimeGauge.builder(METRIC_NAME, () -> readyMillis, TimeUnit.MILLISECONDS)
+                .description("Time from JVM start until the application was ready")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.example.cache.MessageJsonCache;
+import com.example.cache.MessageVersions;
+import com.example.controller.SocialMediaController;
+import com.example.service.MessageService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Opt-in reactive message API, enabled with socialmedia.reactive.enabled=true. The message routes of
+ * {@link SocialMediaController} are served a second time by Reactor Netty on socialmedia.reactive.port, using a
+ * fixed socialmedia.reactive.event-loop-threads threads for all connections.
+ *
+ * H2 has no non-blocking driver that works with this Spring and H2 version, so JDBC calls are confined to a
+ * scheduler with one thread per pooled connection; a request waiting for the database never blocks an event loop,
+ * and never waits for a connection while holding a thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "socialmedia.reactive.enabled", havingValue = "true")
+public class ReactiveConfiguration {
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(SocialMediaController.APPLICATION_NDJSON_VALUE);
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler reactiveJdbcScheduler(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) {
+        return Schedulers.newBoundedElastic(maximumPoolSize, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "reactive-jdbc");
+    }
+
+    @Bean
+    public ReactiveMessageHandler reactiveMessageHandler(MessageService messageService, MessageVersions messageVersions,
+                                                         MessageJsonCache messageJsonCache, MeterRegistry meterRegistry,
+                                                         Scheduler reactiveJdbcScheduler,
+                                                         @Value("${socialmedia.reactive.chunk-size:100}") int chunkSize) {
+        return new ReactiveMessageHandler(messageService, messageVersions, messageJsonCache, meterRegistry,
+                reactiveJdbcScheduler, chunkSize);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> reactiveMessageRoutes(ReactiveMessageHandler handler) {
+        // Like the MVC mapping, only an explicit application/x-ndjson selects the stream; */* gets the JSON list
+        RequestPredicate acceptsNdjson = request -> request.headers().accept().stream()
+                .anyMatch(APPLICATION_NDJSON::equalsTypeAndSubtype);
+        RequestPredicate prefersRepresentation = RequestPredicates.headers(headers -> headers.header("Prefer")
+                .contains(SocialMediaController.PREFER_RETURN_REPRESENTATION));
+
+        return RouterFunctions.route()
+                .POST("/messages/batch", handler::createMessages)
+                .POST("/messages", handler::createMessage)
+                .GET("/messages", acceptsNdjson, handler::streamMessages)
+                .GET("/messages", handler::getMessages)
+                .GET("/messages/search", handler::searchMessages)
+                .GET("/messages/stats", handler::getMessageStats)
+                .GET("/messages/{message_id}", handler::getMessageById)
+                .DELETE("/messages/{message_id}", handler::deleteMessageById)
+                .PATCH("/messages/{message_id}", prefersRepresentation, handler::updateMessageReturningRepresentation)
+                .PATCH("/messages/{message_id}", handler::updateMessage)
+                .GET("/accounts/{account_id}/messages", handler::getMessagesFromAccount)
+                .GET("/accounts/{account_id}/stats", handler::getAccountStats)
+                .onError(Exception.class, handler::error)
+                .build();
+    }
+
+    @Bean
+    public ReactiveServer reactiveServer(RouterFunction<ServerResponse> reactiveMessageRoutes, ObjectMapper objectMapper,
+                                         @Value("${socialmedia.reactive.port:8081}") int port,
+                                         @Value("${socialmedia.reactive.event-loop-threads:2}") int eventLoopThreads) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                })
+                .build();
+        return new ReactiveServer(RouterFunctions.toHttpHandler(reactiveMessageRoutes, strategies), port, eventLoopThreads);
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.reactive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+
+import com.example.cache.MessageJsonCache;
+import com.example.cache.MessageVersions;
+import com.example.controller.SocialMediaController;
+import com.example.entity.Message;
+import com.example.exception.ExceptionController;
+import com.example.exception.InvalidPageRequestException;
+import com.example.exception.InvalidSearchException;
+import com.example.exception.MessageCreationException;
+import com.example.exception.MessageNotFoundException;
+import com.example.exception.SearchUnavailableException;
+import com.example.service.MessageSearchPage;
+import com.example.service.MessageService;
+import com.example.service.TimeRangeCursor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Handlers for the reactive message API. Routes, request bodies, responses, ETags and error statuses match
+ * {@link SocialMediaController} and {@link ExceptionController}.
+ *
+ * Blocking work (MessageService and JDBC) runs on the jdbc scheduler, never on the event loop. Message lists are
+ * read in keyset chunks of chunkSize messages and written as they arrive; the next chunk is only queried once the
+ * client has taken the previous one, so a slow client holds neither a database connection nor the whole list.
+ * Each Message is written from its JSON in the MessageJsonCache.
+ */
+public class ReactiveMessageHandler {
+    private static final ParameterizedTypeReference<List<Message>> MESSAGE_LIST = new ParameterizedTypeReference<>() {
+    };
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(SocialMediaController.APPLICATION_NDJSON_VALUE);
+
+    private final MessageService messageService;
+    private final MessageVersions messageVersions;
+    private final MessageJsonCache messageJsonCache;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler jdbc;
+    private final int chunkSize;
+
+    public ReactiveMessageHandler(MessageService messageService, MessageVersions messageVersions, MessageJsonCache messageJsonCache,
+                                  MeterRegistry meterRegistry, Scheduler jdbc, int chunkSize) {
+        this.messageService = messageService;
+        this.messageVersions = messageVersions;
+        this.messageJsonCache = messageJsonCache;
+        this.meterRegistry = meterRegistry;
+        this.jdbc = jdbc;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Handler for POST /messages
+     */
+    public Mono<ServerResponse> createMessage(ServerRequest request) {
+        return body(request.bodyToMono(Message.class))
+                .publishOn(jdbc)
+                .map(message -> {
+                    messageService.createMessage(message);
+                    return message;
+                })
+                .flatMap(message -> json().bodyValue(message));
+    }
+
+    /**
+     * Handler for POST /messages/batch
+     */
+    public Mono<ServerResponse> createMessages(ServerRequest request) {
+        return body(request.bodyToMono(MESSAGE_LIST))
+                .publishOn(jdbc)
+                .map(messageService::createMessages)
+                .flatMap(results -> json().bodyValue(results));
+    }
+
+    /**
+     * Handler for GET /messages?after={message_id}&limit={limit}, streaming the page as a JSON list, and for
+     * GET /messages?since={epoch}&until={epoch}&before={cursor}&limit={limit}, newest first
+     */
+    public Mono<ServerResponse> getMessages(ServerRequest request) {
+        return Mono.fromCallable(() -> isTimeRange(request)).flatMap(timeRange -> timeRange
+                ? ifNoneMatch(request,
+                        () -> messageVersions.messagesTag(longParam(request, "since"), longParam(request, "until"), before(request), intParam(request, "limit")),
+                        etag -> blocking(() -> messageService.getMessagesBetween(longParam(request, "since"), longParam(request, "until"),
+                                before(request), intParam(request, "limit")))
+                                .flatMap(slice -> timeRangePage(etag, slice)))
+                : ifNoneMatch(request, () -> messageVersions.messagesTag(intParam(request, "after"), intParam(request, "limit")),
+                        etag -> Mono.fromCallable(() -> messageService.getPageSize(intParam(request, "limit")))
+                                .flatMap(pageSize -> {
+                                    int after = cursor(request);
+                                    return blocking(() -> messageService.getNextCursor(after, pageSize))
+                                            .flatMap(next -> page(etag, next, messages(after, next, pageSize, from -> messageService.getMessages(from, chunkSize))));
+                                })));
+    }
+
+    /**
+     * Handler for GET /messages with Accept: application/x-ndjson, streaming every message one JSON object per line
+     */
+    public Mono<ServerResponse> streamMessages(ServerRequest request) {
+        Flux<Message> messages = messages(0, Optional.empty(), Integer.MAX_VALUE, from -> messageService.getMessages(from, chunkSize));
+        return ServerResponse.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(encode(messages, "", "", "", "\n"));
+    }
+
+    /**
+     * Handler for GET /messages/search?q={words}&after={cursor}&limit={limit}
+     */
+    public Mono<ServerResponse> searchMessages(ServerRequest request) {
+        return Mono.fromCallable(() -> request.queryParam("q")
+                        .orElseThrow(() -> new ServerWebInputException("Required query parameter 'q' is missing")))
+                .flatMap(query -> blocking(() -> messageService.searchMessages(query, intParam(request, "after"), intParam(request, "limit"))))
+                .flatMap(this::searchPage);
+    }
+
+    /**
+     * Handler for GET /messages/stats
+     */
+    public Mono<ServerResponse> getMessageStats(ServerRequest request) {
+        return blocking(messageService::getMessageStats)
+                .flatMap(stats -> json().bodyValue(stats));
+    }
+
+    /**
+     * Handler for GET /messages/{message_id}
+     */
+    public Mono<ServerResponse> getMessageById(ServerRequest request) {
+        return Mono.fromCallable(() -> intPathVariable(request, "message_id"))
+                .flatMap(messageId -> blocking(() -> messageService.getMessageById(messageId)))
+                .flatMap(message -> message.isPresent() ? json().bodyValue(messageJsonCache.get(message.get())) : ServerResponse.ok().build());
+    }
+
+    /**
+     * Handler for DELETE /messages/{message_id}
+     */
+    public Mono<ServerResponse> deleteMessageById(ServerRequest request) {
+        return Mono.fromCallable(() -> intPathVariable(request, "message_id"))
+                .flatMap(messageId -> blocking(() -> messageService.deleteMessageById(messageId)))
+                .flatMap(deleted -> deleted == 0 ? ServerResponse.ok().build() : json().bodyValue(deleted));
+    }
+
+    /**
+     * Handler for PATCH /messages/{message_id}
+     */
+    public Mono<ServerResponse> updateMessage(ServerRequest request) {
+        return Mono.fromCallable(() -> intPathVariable(request, "message_id"))
+                .flatMap(messageId -> body(request.bodyToMono(Message.class))
+                        .publishOn(jdbc)
+                        .map(message -> messageService.updateMessage(messageId, message.getMessageText())))
+                .flatMap(updated -> json().bodyValue(updated));
+    }
+
+    /**
+     * Handler for PATCH /messages/{message_id} with Prefer: return=representation
+     */
+    public Mono<ServerResponse> updateMessageReturningRepresentation(ServerRequest request) {
+        return Mono.fromCallable(() -> intPathVariable(request, "message_id"))
+                .flatMap(messageId -> body(request.bodyToMono(Message.class))
+                        .publishOn(jdbc)
+                        .map(message -> messageService.updateAndGetMessage(messageId, message.getMessageText())))
+                .flatMap(message -> json()
+                        .header("Preference-Applied", SocialMediaController.PREFER_RETURN_REPRESENTATION)
+                        .bodyValue(message));
+    }
+
+    /**
+     * Handler for GET /accounts/{account_id}/messages?after={message_id}&limit={limit}, streaming the page as a
+     * JSON list, and for GET /accounts/{account_id}/messages?since={epoch}&until={epoch}&before={cursor}&limit={limit},
+     * newest first
+     */
+    public Mono<ServerResponse> getMessagesFromAccount(ServerRequest request) {
+        return Mono.fromCallable(() -> isTimeRange(request)).flatMap(timeRange -> timeRange
+                ? ifNoneMatch(request,
+                        () -> messageVersions.accountMessagesTag(intPathVariable(request, "account_id"), longParam(request, "since"),
+                                longParam(request, "until"), before(request), intParam(request, "limit")),
+                        etag -> blocking(() -> messageService.getMessagesFromUserBetween(intPathVariable(request, "account_id"),
+                                longParam(request, "since"), longParam(request, "until"), before(request), intParam(request, "limit")))
+                                .flatMap(slice -> timeRangePage(etag, slice)))
+                : ifNoneMatch(request,
+                        () -> messageVersions.accountMessagesTag(intPathVariable(request, "account_id"), intParam(request, "after"), intParam(request, "limit")),
+                        etag -> Mono.fromCallable(() -> messageService.getPageSize(intParam(request, "limit")))
+                                .flatMap(pageSize -> {
+                                    int accountId = intPathVariable(request, "account_id");
+                                    int after = cursor(request);
+                                    return blocking(() -> messageService.getNextCursorFromUser(accountId, after, pageSize))
+                                            .flatMap(next -> page(etag, next, messages(after, next, pageSize,
+                                                    from -> messageService.getAllMessagesFromUser(accountId, from, chunkSize))));
+                                })));
+    }
+
+    /**
+     * Handler for GET /accounts/{account_id}/stats
+     */
+    public Mono<ServerResponse> getAccountStats(ServerRequest request) {
+        return Mono.fromCallable(() -> intPathVariable(request, "account_id"))
+                .flatMap(accountId -> blocking(() -> messageService.getAccountStats(accountId)))
+                .flatMap(stats -> stats.isPresent() ? json().bodyValue(stats.get()) : ServerResponse.ok().build());
+    }
+
+    /**
+     * Answers a handler error with the status that {@link ExceptionController} gives it, counting it the same way.
+     * Malformed input is a 400, as in Spring MVC; anything else propagates as a 500.
+     */
+    public Mono<ServerResponse> error(Throwable e, ServerRequest request) {
+        if (e instanceof MessageCreationException || e instanceof MessageNotFoundException || e instanceof InvalidPageRequestException
+                || e instanceof InvalidSearchException) {
+            meterRegistry.counter(ExceptionController.METRIC_NAME, "exception", e.getClass().getSimpleName()).increment();
+            return ServerResponse.badRequest().contentType(MediaType.TEXT_PLAIN).bodyValue(e.getMessage());
+        }
+        if (e instanceof SearchUnavailableException) {
+            meterRegistry.counter(ExceptionController.METRIC_NAME, "exception", e.getClass().getSimpleName()).increment();
+            return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).contentType(MediaType.TEXT_PLAIN).bodyValue(e.getMessage());
+        }
+        if (e instanceof ServerWebInputException || e instanceof NumberFormatException) {
+            return ServerResponse.badRequest().build();
+        }
+        return Mono.error(e);
+    }
+
+    /**
+     * Answers 304 if If-None-Match holds the current ETag, and builds the response otherwise. The ETag is read
+     * before the response, as {@link MessageVersions} requires.
+     */
+    private static Mono<ServerResponse> ifNoneMatch(ServerRequest request, Callable<String> etag,
+                                                    Function<String, Mono<ServerResponse>> response) {
+        return Mono.fromCallable(etag)
+                .flatMap(tag -> request.checkNotModified(tag).switchIfEmpty(Mono.defer(() -> response.apply(tag))));
+    }
+
+    /**
+     * Builds a keyset page response, with the next cursor header when more messages remain
+     */
+    private Mono<ServerResponse> page(String etag, Optional<Integer> next, Flux<Message> messages) {
+        ServerResponse.BodyBuilder response = json().eTag(etag);
+        next.ifPresent(cursor -> response.header(SocialMediaController.NEXT_CURSOR_HEADER, String.valueOf(cursor)));
+        return response.body(encode(messages, "[", ",", "]", ""));
+    }
+
+    /**
+     * Builds a time range page response, with the time and messageId of its last message as the next cursor when
+     * more messages remain. A page is at most max-page-size messages, so it is read in one query.
+     */
+    private Mono<ServerResponse> timeRangePage(String etag, Slice<Message> slice) {
+        ServerResponse.BodyBuilder response = json().eTag(etag);
+        List<Message> messages = slice.getContent();
+        if (slice.hasNext()) {
+            response.header(SocialMediaController.NEXT_CURSOR_HEADER, TimeRangeCursor.after(messages.get(messages.size() - 1)).toString());
+        }
+        return response.body(encode(Flux.fromIterable(messages), "[", ",", "]", ""));
+    }
+
+    /**
+     * Builds a search page response, with the next rank position header when more matches remain
+     */
+    private Mono<ServerResponse> searchPage(MessageSearchPage page) {
+        ServerResponse.BodyBuilder response = json();
+        page.getNextCursor().ifPresent(cursor -> response.header(SocialMediaController.NEXT_CURSOR_HEADER, String.valueOf(cursor)));
+        return response.body(encode(Flux.fromIterable(page.getMessages()), "[", ",", "]", ""));
+    }
+
+    /**
+     * Reads the messages after a cursor, one chunk query at a time and only as fast as they are consumed
+     * @param after the messageId to seek past
+     * @param upTo the last messageId to return, or empty to read to the end
+     * @param limit the maximum number of messages to return
+     * @param chunk queries the chunk of messages after a messageId
+     */
+    private Flux<Message> messages(int after, Optional<Integer> upTo, int limit, IntFunction<Slice<Message>> chunk) {
+        int last = upTo.orElse(Integer.MAX_VALUE);
+        return blocking(() -> chunk.apply(after))
+                .expand(slice -> slice.hasNext() && lastMessageId(slice) < last
+                        ? blocking(() -> chunk.apply(lastMessageId(slice)))
+                        : Mono.empty())
+                .concatMapIterable(Slice::getContent, 1)
+                .takeWhile(message -> message.getMessageId() <= last)
+                .take(limit);
+    }
+
+    /**
+     * Writes messages as they arrive, each serialized on its own: open, then the messages with separator between
+     * them and terminator after each, then close
+     */
+    private BodyInserter<Flux<Message>, ReactiveHttpOutputMessage> encode(Flux<Message> messages, String open, String separator,
+                                                                         String close, String terminator) {
+        return (output, context) -> {
+            DataBufferFactory buffers = output.bufferFactory();
+            Flux<DataBuffer> body = messages.index()
+                    .map(indexed -> buffer(buffers, indexed.getT1() == 0 ? "" : separator, indexed.getT2(), terminator));
+            return output.writeWith(Flux.concat(text(buffers, open), body, text(buffers, close)));
+        };
+    }
+
+    private static Mono<DataBuffer> text(DataBufferFactory buffers, String text) {
+        return text.isEmpty() ? Mono.empty() : Mono.fromCallable(() -> buffers.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private DataBuffer buffer(DataBufferFactory buffers, String prefix, Message message, String suffix) {
+        byte[] json = messageJsonCache.get(message);
+        byte[] before = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] after = suffix.getBytes(StandardCharsets.UTF_8);
+        return buffers.allocateBuffer(before.length + json.length + after.length).write(before).write(json).write(after);
+    }
+
+    private <T> Mono<T> blocking(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(jdbc);
+    }
+
+    private static <T> Mono<T> body(Mono<T> body) {
+        return body.switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")));
+    }
+
+    private static ServerResponse.BodyBuilder json() {
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+    }
+
+    private static int lastMessageId(Slice<Message> slice) {
+        List<Message> messages = slice.getContent();
+        return messages.get(messages.size() - 1).getMessageId();
+    }
+
+    private static int cursor(ServerRequest request) {
+        Integer after = intParam(request, "after");
+        return after == null ? 0 : after;
+    }
+
+    /**
+     * Tells a time range request from a keyset page request, as SocialMediaController does
+     * @throws InvalidPageRequestException thrown if the request mixes after with the time range parameters
+     */
+    private static boolean isTimeRange(ServerRequest request) throws InvalidPageRequestException {
+        boolean timeRange = request.queryParam("since").isPresent() || request.queryParam("until").isPresent()
+                || request.queryParam("before").isPresent();
+        if (timeRange && request.queryParam("after").isPresent()) {
+            throw new InvalidPageRequestException("A time range pages with before, not after.");
+        }
+        return timeRange;
+    }
+
+    private static String before(ServerRequest request) {
+        return request.queryParam("before").orElse(null);
+    }
+
+    private static Long longParam(ServerRequest request, String name) {
+        return request.queryParam(name).map(Long::valueOf).orElse(null);
+    }
+
+    private static Integer intParam(ServerRequest request, String name) {
+        return request.queryParam(name).map(Integer::valueOf).orElse(null);
+    }
+
+    private static int intPathVariable(ServerRequest request, String name) {
+        return Integer.parseInt(request.pathVariable(name));
+    }
+}
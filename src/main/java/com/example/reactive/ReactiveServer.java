@@ -0,0 +1,62 @@
+package com.example.reactive;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Reactor Netty server for the reactive API, on its own port next to Tomcat. Every connection is served by a fixed
+ * number of event loop threads, however many clients are connected or how slowly they read.
+ */
+public class ReactiveServer implements SmartLifecycle {
+    private final HttpHandler httpHandler;
+    private final int port;
+    private final int eventLoopThreads;
+
+    private LoopResources loops;
+    private volatile DisposableServer server;
+
+    /**
+     * @param httpHandler the routes to serve
+     * @param port the port to listen on, or 0 for any free port
+     * @param eventLoopThreads the number of threads that accept, read and write every connection
+     */
+    public ReactiveServer(HttpHandler httpHandler, int port, int eventLoopThreads) {
+        this.httpHandler = httpHandler;
+        this.port = port;
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    @Override
+    public void start() {
+        loops = LoopResources.create("reactive-http", 1, eventLoopThreads, true);
+        server = HttpServer.create()
+                .port(port)
+                .runOn(loops)
+                .handle(new ReactorHttpHandlerAdapter(httpHandler))
+                .bindNow();
+    }
+
+    @Override
+    public void stop() {
+        server.disposeNow();
+        loops.disposeLater().block();
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return the port the server listens on, once started
+     */
+    public int getPort() {
+        return server.port();
+    }
+}
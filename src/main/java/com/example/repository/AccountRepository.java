@@ -1,8 +1,12 @@
 package com.example.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.entity.Account;
@@ -11,4 +15,13 @@ import com.example.entity.Account;
 public interface AccountRepository extends JpaRepository <Account, Integer> {
     Optional<Account> findByUsername(String username);
     Optional<Account> findByUsernameAndPassword(String username, String password);
+
+    @Query("SELECT a.accountId FROM Account a")
+    List<Integer> findAllAccountIds();
+
+    @Query("SELECT a.username FROM Account a")
+    List<String> findAllUsernames();
+
+    @Query("SELECT a.accountId FROM Account a WHERE a.accountId IN :accountIds")
+    List<Integer> findExistingAccountIds(@Param("accountIds") Collection<Integer> accountIds);
 }
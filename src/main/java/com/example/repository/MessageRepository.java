@@ -1,21 +1,184 @@
 package com.example.repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import com.example.entity.Message;
 
 @Repository
-public interface MessageRepository extends JpaRepository<Message, Integer> {
-    Integer deleteByMessageId(int messageId);
+public interface MessageRepository extends JpaRepository<Message, Integer>, MessageStore {
+    // Constructor expression that reads a row of Message m into a new, unmanaged Message
+    String MESSAGE_PROJECTION = "NEW com.example.entity.Message(m.messageId, m.postedBy, m.messageText, m.timePostedEpoch)";
+
+    // Reads a row of [messageId, postedBy, messageText, timePostedEpoch] into a new, unmanaged Message
+    Function<Object[], Message> MESSAGE_ROW = row -> new Message(((Number) row[0]).intValue(), ((Number) row[1]).intValue(),
+            (String) row[2], ((Number) row[3]).longValue());
+
+    /**
+     * Deletes a message in a single statement and returns the deleted row, read from H2's OLD TABLE delta, as an
+     * unmanaged Message. An entity result would instead be the instance the persistence context already holds, if
+     * the Message was loaded earlier in the transaction, and would stay managed after the row is gone. Empty means
+     * that no row matched.
+     */
+    @Override
+    default Optional<Message> deleteByMessageIdReturning(int messageId) {
+        return deleteRowByMessageIdReturning(messageId).stream().findFirst().map(MESSAGE_ROW);
+    }
+
+    @Query(value = "SELECT messageId, postedBy, messageText, timePostedEpoch FROM OLD TABLE " +
+            "(DELETE FROM message WHERE messageId = :messageId)", nativeQuery = true)
+    List<Object[]> deleteRowByMessageIdReturning(int messageId);
+
+    /**
+     * Updates the text of a message in a single statement and returns the row as it was before, read from H2's OLD
+     * TABLE delta, as an unmanaged Message like {@link #deleteByMessageIdReturning(int)}. The old text is what the
+     * search index takes out; the rest of the row is unchanged. Empty means that no row matched.
+     */
+    @Override
+    default Optional<Message> updateByMessageIdAndMessageTextReturningPrevious(int messageId, String messageText) {
+        return updateRowByMessageIdAndMessageTextReturningPrevious(messageId, messageText).stream().findFirst().map(MESSAGE_ROW);
+    }
+
+    @Query(value = "SELECT messageId, postedBy, messageText, timePostedEpoch FROM OLD TABLE " +
+            "(UPDATE message SET messageText = :messageText WHERE messageId = :messageId)", nativeQuery = true)
+    List<Object[]> updateRowByMessageIdAndMessageTextReturningPrevious(int messageId, String messageText);
 
-    @Modifying(clearAutomatically = true)
-    @Query("UPDATE Message m SET m.messageText = :messageText WHERE m.messageId = :messageId")
-    Integer updateByMessageIdAndMessageText(int messageId, String messageText);
+    // Redeclared from both CrudRepository and MessageStore, whose erasures differ, so that calls are not ambiguous
+    @Override
+    <S extends Message> S save(S message);
 
+    @Override
+    Optional<Message> findById(Integer messageId);
+
+    /**
+     * Every message. The list queries below read rows through a constructor expression into new Message instances
+     * that the persistence context never manages, so a long list costs no entity registration, no snapshot and no
+     * dirty check at flush. Changes to the returned Messages are therefore never written back.
+     */
+    @Query("SELECT " + MESSAGE_PROJECTION + " FROM Message m")
+    @Override
+    List<Message> findAll();
+
+    /**
+     * Every message posted by a single Account, unmanaged like {@link #findAll()}
+     */
+    @Query("SELECT " + MESSAGE_PROJECTION + " FROM Message m WHERE m.postedBy = :postedBy")
     List<Message> findAllByPostedBy(int postedBy);
+
+    /**
+     * Keyset page over all messages: the messages whose ID is greater than the cursor, in ID order, unmanaged
+     * like {@link #findAll()}. The Pageable should always request page 0 so that the database seeks on the primary
+     * key instead of counting past an offset.
+     */
+    @Query("SELECT " + MESSAGE_PROJECTION + " FROM Message m WHERE m.messageId > :messageId ORDER BY m.messageId")
+    Slice<Message> findByMessageIdGreaterThanOrderByMessageIdAsc(int messageId, Pageable pageable);
+
+    /**
+     * Keyset page over the messages posted by a single Account, in ID order, unmanaged like {@link #findAll()}.
+     */
+    @Query("SELECT " + MESSAGE_PROJECTION + " FROM Message m WHERE m.postedBy = :postedBy AND m.messageId > :messageId ORDER BY m.messageId")
+    Slice<Message> findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(int postedBy, int messageId, Pageable pageable);
+
+    /**
+     * Keyset page over the messages posted between since and until inclusive, newest first, unmanaged like
+     * {@link #findAll()}. Messages posted at until itself must also have an ID less than before, so that a page
+     * continues from the timePostedEpoch and ID of the last Message of the previous one; Integer.MAX_VALUE starts
+     * from the newest. Read in the order of the descending timePostedEpoch index, so a page stops after pageSize + 1
+     * index entries instead of sorting the whole range.
+     */
+    @Query("SELECT " + MESSAGE_PROJECTION + " FROM Message m WHERE m.timePostedEpoch >= :since AND m.timePostedEpoch <= :until " +
+            "AND (m.timePostedEpoch < :until OR m.messageId < :before) ORDER BY m.timePostedEpoch DESC, m.messageId DESC")
+    Slice<Message> findByTimePostedEpochBetweenNewestFirst(long since, long until, int before, Pageable pageable);
+
+    /**
+     * Keyset page over the messages posted by a single Account between since and until, newest first, like
+     * {@link #findByTimePostedEpochBetweenNewestFirst}, read from the (postedBy, timePostedEpoch) index. Ordering by
+     * the constant postedBy too lets H2 see that the index is already in this order.
+     */
+    @Query("SELECT " + MESSAGE_PROJECTION + " FROM Message m WHERE m.postedBy = :postedBy " +
+            "AND m.timePostedEpoch >= :since AND m.timePostedEpoch <= :until " +
+            "AND (m.timePostedEpoch < :until OR m.messageId < :before) " +
+            "ORDER BY m.postedBy, m.timePostedEpoch DESC, m.messageId DESC")
+    Slice<Message> findByPostedByAndTimePostedEpochBetweenNewestFirst(int postedBy, long since, long until, int before,
+                                                                      Pageable pageable);
+
+    /**
+     * The IDs at positions offset and offset + 1 of the keyset listing after messageId, read from the primary key
+     * alone. Two IDs back means that a page of offset + 1 messages is followed by more, with the first ID as its
+     * cursor.
+     */
+    @Query(value = "SELECT messageId FROM message WHERE messageId > :messageId ORDER BY messageId " +
+            "OFFSET :offset ROWS FETCH NEXT 2 ROWS ONLY", nativeQuery = true)
+    List<Integer> findMessageIdsAtOffset(int messageId, int offset);
+
+    /**
+     * The IDs at positions offset and offset + 1 of the keyset listing of one Account's messages after messageId.
+     */
+    @Query(value = "SELECT messageId FROM message WHERE postedBy = :postedBy AND messageId > :messageId " +
+            "ORDER BY messageId OFFSET :offset ROWS FETCH NEXT 2 ROWS ONLY", nativeQuery = true)
+    List<Integer> findMessageIdsByPostedByAtOffset(int postedBy, int messageId, int offset);
+
+    /**
+     * The IDs of the keyset listing after messageId, from the primary key alone. A shard cannot find a position in
+     * the listing of all shards by itself, so the sharded store merges these instead of asking for an offset.
+     */
+    @Query("SELECT m.messageId FROM Message m WHERE m.messageId > :messageId ORDER BY m.messageId")
+    List<Integer> findMessageIdsAfter(int messageId, Pageable pageable);
+
+    /**
+     * Keyset page of [messageId, messageText] pairs after messageId, for building in-memory indexes one page at a
+     * time instead of over one open cursor.
+     */
+    @Query("SELECT m.messageId, m.messageText FROM Message m WHERE m.messageId > :messageId ORDER BY m.messageId")
+    List<Object[]> findMessageTextsAfter(int messageId, Pageable pageable);
+
+    /**
+     * [postedBy, message count, first timePostedEpoch, last timePostedEpoch] of every Account with messages, read
+     * from the (postedBy, timePostedEpoch) index, for reconciling the in-memory message counters.
+     */
+    @Query("SELECT m.postedBy, COUNT(m), MIN(m.timePostedEpoch), MAX(m.timePostedEpoch) FROM Message m GROUP BY m.postedBy")
+    List<Object[]> countAllGroupByPostedBy();
+
+    /**
+     * [first timePostedEpoch, last timePostedEpoch] of one Account's messages, as a single row of nulls if it has
+     * none. Both ends are seeks on the (postedBy, timePostedEpoch) index.
+     */
+    @Query("SELECT MIN(m.timePostedEpoch), MAX(m.timePostedEpoch) FROM Message m WHERE m.postedBy = :postedBy")
+    List<Object[]> findTimePostedRangeByPostedBy(int postedBy);
+
+    /**
+     * [first timePostedEpoch, last timePostedEpoch] of all messages, read from the timePostedEpoch index.
+     */
+    @Query("SELECT MIN(m.timePostedEpoch), MAX(m.timePostedEpoch) FROM Message m")
+    List<Object[]> findTimePostedRange();
+
+    /**
+     * Cursor over every message in ID order. Rows are fetched from the driver in batches and loaded read-only,
+     * so the caller must consume the Stream inside a transaction, close it, and detach each Message once used.
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.annotations.QueryHints.READ_ONLY, value = "true")
+    })
+    Stream<Message> streamAllByOrderByMessageIdAsc();
+
+    /**
+     * Cursor over the messageId and messageText of every message, for building in-memory indexes. Rows come back
+     * as [messageId, messageText] pairs, not entities, so nothing is added to the persistence context; the caller
+     * must still consume the Stream inside a transaction and close it.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "1000"))
+    @Query("SELECT m.messageId, m.messageText FROM Message m")
+    Stream<Object[]> streamAllMessageTexts();
 }
@@ -0,0 +1,65 @@
+package com.example.repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import com.example.entity.Message;
+
+/**
+ * The message queries the services run. {@link MessageRepository} implements them against the single database,
+ * and documents each query; with socialmedia.sharding.enabled=true, ShardedMessageStore spreads them over the shards.
+ */
+public interface MessageStore {
+    <S extends Message> S save(S message);
+
+    /**
+     * Saves the Messages, in one transaction per shard they belong to
+     */
+    <S extends Message> List<S> saveAll(Iterable<S> messages);
+
+    /**
+     * @return the shard a Message is written to, always 0 without sharding. A transaction never spans shards.
+     */
+    default int shardOf(Message message) {
+        return 0;
+    }
+
+    List<Message> findAll();
+
+    Optional<Message> findById(Integer messageId);
+
+    List<Message> findAllById(Iterable<Integer> messageIds);
+
+    Optional<Message> deleteByMessageIdReturning(int messageId);
+
+    Optional<Message> updateByMessageIdAndMessageTextReturningPrevious(int messageId, String messageText);
+
+    List<Message> findAllByPostedBy(int postedBy);
+
+    Slice<Message> findByMessageIdGreaterThanOrderByMessageIdAsc(int messageId, Pageable pageable);
+
+    Slice<Message> findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(int postedBy, int messageId, Pageable pageable);
+
+    Slice<Message> findByTimePostedEpochBetweenNewestFirst(long since, long until, int before, Pageable pageable);
+
+    Slice<Message> findByPostedByAndTimePostedEpochBetweenNewestFirst(int postedBy, long since, long until, int before,
+                                                                      Pageable pageable);
+
+    List<Integer> findMessageIdsAtOffset(int messageId, int offset);
+
+    List<Integer> findMessageIdsByPostedByAtOffset(int postedBy, int messageId, int offset);
+
+    Stream<Message> streamAllByOrderByMessageIdAsc();
+
+    Stream<Object[]> streamAllMessageTexts();
+
+    List<Object[]> countAllGroupByPostedBy();
+
+    List<Object[]> findTimePostedRangeByPostedBy(int postedBy);
+
+    List<Object[]> findTimePostedRange();
+}
@@ -1,6 +1,8 @@
 package com.example.service;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -8,24 +10,47 @@ import com.example.entity.Account;
 import com.example.exception.AccountRegistrationException;
 import com.example.exception.AuthenticationException;
 import com.example.exception.DuplicateUsernameException;
+import com.example.index.AccountIdIndex;
+import com.example.index.UsernameFilter;
 import com.example.repository.AccountRepository;
 
 @Service
 @Transactional
 public class AccountService {
+    // Name of the unique constraint on account.username in data.sql
+    private static final String USERNAME_CONSTRAINT = "ACCOUNT_USERNAME_UNIQUE";
+
     // Account repository that this class will use
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private AccountIdIndex accountIdIndex;
+
+    @Autowired
+    private UsernameFilter usernameFilter;
+
     /**
-     * This method will tell the account repo to save a new account
+     * This method will tell the account repo to save a new account. The unique constraint on username decides
+     * any race between two registrations of the same username.
      * @param account the Account we wish to register
      * @throws DuplicateUsernameException thrown if the username already exists
      * @throws AccountRegistrationException thrown if the username or password are invalid
      */
     public void register(Account account) throws DuplicateUsernameException, AccountRegistrationException {
         validateAccount(account);
-        accountRepository.save(account);
+
+        try {
+            accountRepository.saveAndFlush(account);
+        } catch (DataIntegrityViolationException e) {
+            if (isUsernameConstraintViolation(e)) {
+                throw duplicateUsername();
+            }
+            throw e;
+        }
+
+        usernameFilter.put(account.getUsername());
+        accountIdIndex.add(account.getAccountId());
     }
 
     /**
@@ -48,10 +73,7 @@ public class AccountService {
      */
     private void validateAccount(Account account) throws DuplicateUsernameException, AccountRegistrationException {
         if (!usernameAvailable(account.getUsername())) {
-            throw new DuplicateUsernameException(
-                    "An account with this username already exists. " +
-                            "Please choose a different username."
-            );
+            throw duplicateUsername();
         }
 
         if (!isValidUsernameAndPassword(account.getUsername(), account.getPassword())) {
@@ -63,12 +85,34 @@ public class AccountService {
     }
 
     /**
-     * This method validates whether a username is available
+     * This method validates whether a username is available. Usernames that the username filter has never seen
+     * are available without querying the database.
      * @param username the username in question
      * @return true or false depending on whether the username is available
      */
     private boolean usernameAvailable(String username) {
-        return accountRepository.findByUsername(username).isEmpty();
+        return !usernameFilter.mightContain(username) || accountRepository.findByUsername(username).isEmpty();
+    }
+
+    /**
+     * This method checks whether a failed insert was rejected by the unique constraint on username
+     * @param e the exception thrown by the insert
+     * @return true if the username was already taken
+     */
+    private boolean isUsernameConstraintViolation(DataIntegrityViolationException e) {
+        return e.getCause() instanceof ConstraintViolationException
+                && String.valueOf(((ConstraintViolationException) e.getCause()).getConstraintName())
+                        .toUpperCase().contains(USERNAME_CONSTRAINT);
+    }
+
+    /**
+     * @return the exception thrown when a username is already taken
+     */
+    private DuplicateUsernameException duplicateUsername() {
+        return new DuplicateUsernameException(
+                "An account with this username already exists. " +
+                        "Please choose a different username."
+        );
     }
 
     /**
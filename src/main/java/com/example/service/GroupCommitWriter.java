@@ -0,0 +1,273 @@
+package com.example.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.jctools.queues.MpscArrayQueue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.cache.MessageVersions;
+import com.example.cache.TimelineCache;
+import com.example.entity.Message;
+import com.example.index.MessageCounters;
+import com.example.index.MessageTextIndex;
+import com.example.repository.MessageStore;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Group commit for POST /messages, enabled with socialmedia.messages.group-commit.enabled=true.
+ *
+ * Request threads put validated Messages on a bounded lock-free queue and wait. A single writer thread drains the
+ * queue into one transaction of up to maxMessages Messages, committing as soon as that many have queued up or
+ * maxDelay after the first of them arrived. Each request returns once the transaction holding its Message has
+ * committed, so the response is the same as if it had committed on its own. If a group fails, its Messages are
+ * retried one transaction each, so one bad Message cannot fail the rest of the group. With sharding, a group is
+ * committed in one transaction per shard.
+ *
+ * A full queue is not an error: {@link #write(Message)} returns false at once and the caller inserts the Message
+ * itself. The same goes for a Message queued while the writer stops: whichever of the writer and the request takes
+ * it off the queue first is the one that inserts it. If the writer thread dies, it fails its group and every
+ * queued Message, and stops accepting new ones.
+ */
+@Component
+@ConditionalOnProperty(name = "socialmedia.messages.group-commit.enabled", havingValue = "true")
+public class GroupCommitWriter {
+    // Distribution of the number of Messages per group commit
+    public static final String METRIC_NAME = "socialmedia.messages.group-commit";
+
+    private final MessageStore messageStore;
+    private final TimelineCache timelineCache;
+    private final MessageTextIndex messageTextIndex;
+    private final MessageVersions messageVersions;
+    private final MessageCounters messageCounters;
+    private final TransactionTemplate transactionTemplate;
+    private final DistributionSummary groupSizes;
+    private final int maxMessages;
+    private final long maxDelayNanos;
+    private final MpscArrayQueue<PendingMessage> queue;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    public GroupCommitWriter(MessageStore messageStore, TimelineCache timelineCache, MessageTextIndex messageTextIndex,
+                             MessageVersions messageVersions, MessageCounters messageCounters,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                             @Value("${socialmedia.messages.group-commit.max-messages:100}") int maxMessages,
+                             @Value("${socialmedia.messages.group-commit.max-delay:PT0.002S}") Duration maxDelay,
+                             @Value("${socialmedia.messages.group-commit.queue-capacity:10000}") int queueCapacity) {
+        this.messageStore = messageStore;
+        this.timelineCache = timelineCache;
+        this.messageTextIndex = messageTextIndex;
+        this.messageVersions = messageVersions;
+        this.messageCounters = messageCounters;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.groupSizes = DistributionSummary.builder(METRIC_NAME)
+                .description("Messages inserted per group commit")
+                .baseUnit("messages")
+                .register(meterRegistry);
+        this.maxMessages = maxMessages;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.queue = new MpscArrayQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "message-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting Messages, then commits every Message already queued before returning. Messages that were
+     * queued after the writer saw the queue empty for the last time are failed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+        failQueued(new IllegalStateException("The group commit writer has stopped"));
+    }
+
+    /**
+     * Queues a validated Message for the next group commit and waits until that group has committed
+     * @param message the Message to insert; Hibernate sets its messageId
+     * @return true once the Message is committed, or false without waiting if the queue is full
+     */
+    public boolean write(Message message) {
+        PendingMessage pending = new PendingMessage(message);
+        if (!running || !queue.offer(pending)) {
+            return false;
+        }
+        // The writer may have stopped between the check and the offer, and so never see the Message
+        if (!running && pending.take()) {
+            return false;
+        }
+
+        LockSupport.unpark(writer);
+        pending.await();
+        return true;
+    }
+
+    private void run() {
+        List<PendingMessage> group = new ArrayList<>(maxMessages);
+        Throwable failure = null;
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingMessage first = queue.poll();
+                if (first == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                if (!first.take()) {
+                    continue;
+                }
+
+                group.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxMessages) {
+                    if (queue.drain(pending -> takeInto(group, pending), maxMessages - group.size()) == 0) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || !running) {
+                            break;
+                        }
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                }
+
+                for (List<PendingMessage> shardGroup : byShard(group)) {
+                    commit(shardGroup);
+                }
+                group.clear();
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        } finally {
+            // Normally empty; after a failure, nothing else would ever complete these
+            running = false;
+            RuntimeException stopped = new IllegalStateException("The group commit writer has stopped", failure);
+            group.forEach(pending -> pending.fail(stopped));
+            failQueued(stopped);
+        }
+    }
+
+    private static void takeInto(List<PendingMessage> group, PendingMessage pending) {
+        if (pending.take()) {
+            group.add(pending);
+        }
+    }
+
+    /**
+     * Fails every queued Message that no one has taken yet
+     */
+    private void failQueued(RuntimeException e) {
+        PendingMessage pending;
+        while ((pending = queue.poll()) != null) {
+            if (pending.take()) {
+                pending.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Splits a group by the shard its Messages are written to, since one transaction cannot write to several
+     */
+    private Collection<List<PendingMessage>> byShard(List<PendingMessage> group) {
+        Map<Integer, List<PendingMessage>> shards = new TreeMap<>();
+        for (PendingMessage pending : group) {
+            shards.computeIfAbsent(messageStore.shardOf(pending.message), shard -> new ArrayList<>()).add(pending);
+        }
+        return shards.values();
+    }
+
+    private void commit(List<PendingMessage> group) {
+        List<Message> messages = new ArrayList<>(group.size());
+        for (PendingMessage pending : group) {
+            messages.add(pending.message);
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                messages.stream().map(Message::getPostedBy).distinct().forEach(messageCounters::writing);
+                messageStore.saveAll(messages);
+                messages.forEach(timelineCache::add);
+                messages.forEach(messageTextIndex::add);
+                messages.forEach(messageVersions::changed);
+                messages.forEach(messageCounters::added);
+            });
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.get(0).fail(e);
+                return;
+            }
+
+            for (PendingMessage pending : group) {
+                // The rolled-back INSERT left a generated ID behind, which would turn the retry into a merge
+                pending.message.setMessageId(null);
+                commit(List.of(pending));
+            }
+            return;
+        }
+
+        groupSizes.record(group.size());
+        group.forEach(PendingMessage::complete);
+    }
+
+    /**
+     * A queued Message and the request waiting for it to commit
+     */
+    private static final class PendingMessage {
+        private final Message message;
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+        private final AtomicBoolean taken = new AtomicBoolean();
+
+        private PendingMessage(Message message) {
+            this.message = message;
+        }
+
+        /**
+         * Claims the Message for the writer, or back for its request; only the first claim succeeds
+         */
+        private boolean take() {
+            return taken.compareAndSet(false, true);
+        }
+
+        private void complete() {
+            committed.complete(null);
+        }
+
+        private void fail(RuntimeException e) {
+            committed.completeExceptionally(e);
+        }
+
+        /**
+         * Waits for the commit, rethrowing the exception that failed it
+         */
+        private void await() {
+            try {
+                committed.join();
+            } catch (CompletionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+    }
+}
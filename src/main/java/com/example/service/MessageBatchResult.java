@@ -0,0 +1,49 @@
+package com.example.service;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The outcome of one Message in a POST /messages/batch request. Created items carry status 200 and the persisted
+ * Message; rejected items carry status 400 and the reason, exactly as POST /messages would have answered for them.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MessageBatchResult {
+    private final int status;
+    private final Message message;
+    private final String error;
+
+    private MessageBatchResult(int status, Message message, String error) {
+        this.status = status;
+        this.message = message;
+        this.error = error;
+    }
+
+    /**
+     * @param message the persisted Message, with its generated messageId
+     * @return a result for a Message that was created
+     */
+    public static MessageBatchResult created(Message message) {
+        return new MessageBatchResult(200, message, null);
+    }
+
+    /**
+     * @param error why the Message could not be created
+     * @return a result for a Message that was not created
+     */
+    public static MessageBatchResult rejected(String error) {
+        return new MessageBatchResult(400, null, error);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
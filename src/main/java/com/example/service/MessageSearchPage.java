@@ -0,0 +1,34 @@
+package com.example.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.example.entity.Message;
+
+/**
+ * One page of ranked search results. The cursor is a rank position, not a messageId, since results are not in
+ * messageId order.
+ */
+public class MessageSearchPage {
+    private final List<Message> messages;
+    private final Integer nextCursor;
+
+    public MessageSearchPage(List<Message> messages, Integer nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return the matching Messages, best match first
+     */
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return the after value for the next page, or empty on the last page
+     */
+    public Optional<Integer> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+}
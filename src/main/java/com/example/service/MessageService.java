@@ -1,35 +1,171 @@
 package com.example.service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.cache.MessageCache;
+import com.example.cache.MessageJsonCache;
+import com.example.cache.MessageVersions;
+import com.example.cache.TimelineCache;
 import com.example.entity.Message;
+import com.example.exception.InvalidPageRequestException;
+import com.example.exception.InvalidSearchException;
+import com.example.exception.SearchUnavailableException;
 import com.example.exception.MessageCreationException;
 import com.example.exception.MessageNotFoundException;
-import com.example.repository.AccountRepository;
-import com.example.repository.MessageRepository;
+import com.example.index.AccountIdIndex;
+import com.example.index.MessageCounters;
+import com.example.index.MessageStats;
+import com.example.index.MessageTextIndex;
+import com.example.repository.MessageStore;
 
 @Service
 @Transactional
 public class MessageService {
+    private static final String INVALID_MESSAGE = "Sorry, we could not post that message. " +
+            "Please make sure that your message is not empty, is less than 255 characters, and that you are logged in.";
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private AccountIdIndex accountIdIndex;
+
+    @Autowired
+    private MessageCache messageCache;
+
+    @Autowired
+    private TimelineCache timelineCache;
+
     @Autowired
-    private MessageRepository messageRepository;
+    private MessageTextIndex messageTextIndex;
 
     @Autowired
-    private AccountRepository accountRepository;
+    private MessageVersions messageVersions;
+
+    @Autowired
+    private MessageJsonCache messageJsonCache;
+
+    @Autowired
+    private MessageCounters messageCounters;
+
+    // Present only with socialmedia.messages.group-commit.enabled=true
+    @Autowired(required = false)
+    private GroupCommitWriter groupCommitWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Page size used when a client does not ask for one. Tables smaller than this are returned in a single page.
+    @Value("${socialmedia.messages.default-page-size:1000}")
+    private int defaultPageSize;
+
+    // Upper bound on the page size a client may ask for
+    @Value("${socialmedia.messages.max-page-size:1000}")
+    private int maxPageSize;
+
+    // Upper bound on the number of distinct terms in one search query
+    @Value("${socialmedia.search.max-terms:8}")
+    private int maxSearchTerms;
+
+    // Upper bound on the number of Messages in one POST /messages/batch request
+    @Value("${socialmedia.messages.max-batch-size:1000}")
+    private int maxBatchSize;
 
     /**
-     * This method attempts to persist a Message to the database
+     * This method attempts to persist a Message to the database. With group commit enabled, the Message is inserted
+     * by the GroupCommitWriter together with other requests' Messages, and this method returns once that
+     * transaction has committed. No transaction is opened here, so a waiting request does not hold a connection.
      * @param message the Message we wish to create
      * @throws MessageCreationException thrown if the Message is not valid
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void createMessage(Message message) throws MessageCreationException {
         validateMessage(message);
-        messageRepository.save(message);
+        if (groupCommitWriter != null && groupCommitWriter.write(message)) {
+            return;
+        }
+
+        messageCounters.writing(message.getPostedBy());
+        messageStore.save(message);
+        timelineCache.add(message);
+        messageTextIndex.add(message);
+        messageVersions.changed(message);
+        messageCounters.added(message);
+    }
+
+    /**
+     * This method attempts to persist a batch of Messages in one transaction, or one per shard with sharding.
+     * Every distinct postedBy is checked in one pass over the account index, and the valid Messages are saved
+     * together so that Hibernate can send their INSERTs as JDBC batches. Invalid Messages are reported and skipped;
+     * they do not fail the rest of the batch. No transaction is opened around the account check, so that it never
+     * holds a connection while the Messages are saved.
+     * @param messages the Messages we wish to create
+     * @return one result per Message, in the order given
+     * @throws MessageCreationException thrown if the batch holds more than maxBatchSize Messages
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<MessageBatchResult> createMessages(List<Message> messages) throws MessageCreationException {
+        if (messages.size() > maxBatchSize) {
+            throw new MessageCreationException("Sorry, a batch may contain at most " + maxBatchSize + " messages.");
+        }
+
+        Set<Integer> postedBy = new HashSet<>();
+        for (Message message : messages) {
+            if (message != null && message.getPostedBy() != null) {
+                postedBy.add(message.getPostedBy());
+            }
+        }
+        Set<Integer> existingAccountIds = accountIdIndex.existing(postedBy);
+
+        boolean[] accepted = new boolean[messages.size()];
+        List<Message> valid = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            accepted[i] = message != null && isValidMessageText(message.getMessageText()) && existingAccountIds.contains(message.getPostedBy());
+            if (accepted[i]) {
+                valid.add(message);
+            }
+        }
+        valid.stream().map(Message::getPostedBy).distinct().forEach(messageCounters::writing);
+        Iterator<Message> saved = messageStore.saveAll(valid).iterator();
+
+        List<MessageBatchResult> results = new ArrayList<>(messages.size());
+        for (boolean created : accepted) {
+            if (created) {
+                Message message = saved.next();
+                timelineCache.add(message);
+                messageTextIndex.add(message);
+                messageVersions.changed(message);
+                messageCounters.added(message);
+                results.add(MessageBatchResult.created(message));
+            } else {
+                results.add(MessageBatchResult.rejected(INVALID_MESSAGE));
+            }
+        }
+        return results;
     }
 
     /**
@@ -38,26 +174,160 @@ public class MessageService {
      */
     @Transactional(readOnly = true)
     public List<Message> getMessages() {
-        return messageRepository.findAll();
+        return messageStore.findAll();
+    }
+
+    /**
+     * This method streams every message in the database, in messageId order, to a consumer. Each Message is
+     * detached from the persistence context once the consumer returns, so memory use does not grow with the table.
+     * @param consumer called once per message, on the calling thread, while the transaction is open
+     */
+    @Transactional(readOnly = true)
+    public void streamMessages(Consumer<Message> consumer) {
+        try (Stream<Message> messages = messageStore.streamAllByOrderByMessageIdAsc()) {
+            messages.forEach(message -> {
+                consumer.accept(message);
+                entityManager.detach(message);
+            });
+        }
     }
 
     /**
-     * This method queries the database for a specific message and returns it
+     * This method queries the database for one keyset page of messages, ordered by messageId
+     * @param after the cursor returned with the previous page, or null to start from the beginning
+     * @param limit the maximum number of messages to return, or null for the default page size
+     * @return a Slice of messages whose IDs are greater than after
+     * @throws InvalidPageRequestException thrown if limit is less than 1
+     */
+    @Transactional(readOnly = true)
+    public Slice<Message> getMessages(Integer after, Integer limit) throws InvalidPageRequestException {
+        return messageStore.findByMessageIdGreaterThanOrderByMessageIdAsc(cursor(after), pageRequest(limit));
+    }
+
+    /**
+     * This method queries the database for one page of the messages posted in a time range, newest first
+     * @param since the earliest timePostedEpoch to include, or null for no lower bound
+     * @param until the latest timePostedEpoch to include, or null for no upper bound
+     * @param before the cursor returned with the previous page, or null to start from the newest message
+     * @param limit the maximum number of messages to return, or null for the default page size
+     * @return a Slice of messages posted between since and until
+     * @throws InvalidPageRequestException thrown if limit is less than 1, since is after until, or before is not a
+     *         cursor
+     */
+    @Transactional(readOnly = true)
+    public Slice<Message> getMessagesBetween(Long since, Long until, String before, Integer limit)
+            throws InvalidPageRequestException {
+        long from = since(since, until);
+        TimeRangeCursor position = position(until, before);
+        return messageStore.findByTimePostedEpochBetweenNewestFirst(
+                from, position.getTimePostedEpoch(), position.getMessageId(), pageRequest(limit));
+    }
+
+    /**
+     * This method finds the cursor that a keyset page of messages is returned with, without reading the page itself
+     * @param after the cursor returned with the previous page, or null to start from the beginning
+     * @param pageSize the resolved page size, see {@link #getPageSize(Integer)}
+     * @return the messageId of the last Message on the page if more messages follow it, otherwise empty
+     */
+    @Transactional(readOnly = true)
+    public Optional<Integer> getNextCursor(Integer after, int pageSize) {
+        return nextCursor(messageStore.findMessageIdsAtOffset(cursor(after), pageSize - 1));
+    }
+
+    /**
+     * This method resolves the page size of a keyset page request
+     * @param limit the page size requested by the client, or null for the default page size
+     * @return the number of messages the page holds at most
+     * @throws InvalidPageRequestException thrown if limit is less than 1
+     */
+    public int getPageSize(Integer limit) throws InvalidPageRequestException {
+        return pageRequest(limit).getPageSize();
+    }
+
+    /**
+     * This method searches message text through the inverted index, returning one page of ranked results. Each hit
+     * is checked against the stored text, so a Message deleted or rewritten by a write that has committed but not
+     * yet reached the index is skipped. The cursor counts the skipped hits too, so the next page starts where this
+     * one stopped.
+     * @param query the words to search for; a Message matches if it contains any of them
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of messages to return, or null for the default page size
+     * @return the matching Messages, best match first, and the cursor of the next page
+     * @throws InvalidSearchException thrown if the query has no terms or more than maxSearchTerms
+     * @throws InvalidPageRequestException thrown if limit is less than 1
+     * @throws SearchUnavailableException thrown while the index is still loading in the background
+     */
+    @Transactional(readOnly = true)
+    public MessageSearchPage searchMessages(String query, Integer after, Integer limit)
+            throws InvalidSearchException, InvalidPageRequestException, SearchUnavailableException {
+        List<String> terms = MessageTextIndex.terms(query);
+        if (terms.isEmpty() || terms.size() > maxSearchTerms) {
+            throw new InvalidSearchException("A search must contain between 1 and " + maxSearchTerms + " words.");
+        }
+        if (!messageTextIndex.isLoaded()) {
+            throw new SearchUnavailableException("Search is unavailable until the message index has loaded.");
+        }
+
+        int pageSize = pageRequest(limit).getPageSize();
+        int position = Math.max(0, cursor(after));
+        List<Message> page = new ArrayList<>(pageSize);
+        boolean more = true;
+        while (page.size() < pageSize && more) {
+            int wanted = pageSize - page.size();
+            List<Integer> ranked = messageTextIndex.search(terms, position, wanted + 1);
+            more = ranked.size() > wanted;
+            List<Integer> messageIds = more ? ranked.subList(0, wanted) : ranked;
+            position += messageIds.size();
+
+            Map<Integer, Message> messages = messageStore.findAllById(messageIds).stream()
+                    .collect(Collectors.toMap(Message::getMessageId, Function.identity()));
+            for (int messageId : messageIds) {
+                Message message = messages.get(messageId);
+                if (message != null && messageTextIndex.matches(message, terms)) {
+                    page.add(message);
+                }
+            }
+        }
+
+        return new MessageSearchPage(page, more ? position : null);
+    }
+
+    /**
+     * This method returns a specific message from the message cache, querying the database on a miss.
+     * No transaction is started here, so a cache hit never borrows a database connection.
      * @param messageId the ID of the message we wish to find
      * @return an Optional representation of the message, if it exists.
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<Message> getMessageById(int messageId) {
-        return messageRepository.findById(messageId);
+        return messageCache.get(messageId, messageStore::findById);
     }
 
     /**
-     * This method tells the database to delete a specific message
+     * This method tells the database to delete a specific message, in a single statement. The author is looked up
+     * first, through the message cache, so that the write is marked in flight on that Account alone.
      * @param messageId the ID of the Message we wish to delete
      * @return the number of Messages deleted (should be at most 1)
      */
     public Integer deleteMessageById(int messageId) {
-        return messageRepository.deleteByMessageId(messageId);
+        Optional<Message> existing = messageCache.get(messageId, messageStore::findById);
+        if (existing.isEmpty()) {
+            return 0;
+        }
+
+        messageCounters.writing(existing.get().getPostedBy());
+        Optional<Message> message = messageStore.deleteByMessageIdReturning(messageId);
+        if (message.isEmpty()) {
+            return 0;
+        }
+
+        messageCache.invalidate(messageId);
+        messageJsonCache.invalidate(messageId);
+        timelineCache.remove(message.get());
+        messageTextIndex.remove(message.get());
+        messageVersions.changed(message.get());
+        messageCounters.removed(message.get());
+        return 1;
     }
 
     /**
@@ -69,21 +339,219 @@ public class MessageService {
      * @throws MessageCreationException thrown if messageText is either empty or mor than 255 characters
      */
     public Integer updateMessage(int messageId, String messageText) throws MessageNotFoundException, MessageCreationException {
-        validateMessage(messageId, messageText);
+        updateAndGetMessage(messageId, messageText);
+        return 1;
+    }
 
-        return messageRepository.updateByMessageIdAndMessageText(messageId, messageText);
+    /**
+     * This method will attempt to update a Message in the database with a single conditional UPDATE, which returns
+     * the row as it was before. No row coming back means no Message with messageId exists; otherwise the updated
+     * Message is that row with the new text, and the old text is taken out of the search index.
+     * @param messageId the ID of the Message we wish to update
+     * @param messageText the new text of the Message
+     * @return the Message as it exists after the update
+     * @throws MessageNotFoundException thrown if no Message with messageId exists
+     * @throws MessageCreationException thrown if messageText is either empty or mor than 255 characters
+     */
+    public Message updateAndGetMessage(int messageId, String messageText) throws MessageNotFoundException, MessageCreationException {
+        validateMessageText(messageText);
+
+        Message previous = messageStore.updateByMessageIdAndMessageTextReturningPrevious(messageId, messageText)
+                .orElseThrow(() -> new MessageNotFoundException("The message you're trying to update was not found"));
+        Message message = new Message(previous.getMessageId(), previous.getPostedBy(), messageText, previous.getTimePostedEpoch());
+
+        messageCache.invalidate(messageId);
+        messageJsonCache.invalidate(messageId);
+        timelineCache.update(message);
+        messageTextIndex.update(previous, message);
+        messageVersions.changed(message);
+        return message;
     }
 
     /**
-     * This method queries the database for all Messages posted by a specific Account
+     * This method returns all Messages posted by a specific Account, from the timeline cache when possible
      * @param accountId the ID of the Account whose Messages we wish to see
      * @return a List of all Messages posted by accountId
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<Message> getAllMessagesFromUser(int accountId) {
-        return messageRepository.findAllByPostedBy(accountId);
+        return timelineCache.get(accountId, this::loadTimeline)
+                .orElseGet(() -> messageStore.findAllByPostedBy(accountId));
+    }
+
+    /**
+     * This method queries the database for one keyset page of the Messages posted by a specific Account
+     * @param accountId the ID of the Account whose Messages we wish to see
+     * @param after the cursor returned with the previous page, or null to start from the beginning
+     * @param limit the maximum number of messages to return, or null for the default page size
+     * @return a Slice of the Messages posted by accountId whose IDs are greater than after
+     * @throws InvalidPageRequestException thrown if limit is less than 1
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Slice<Message> getAllMessagesFromUser(int accountId, Integer after, Integer limit) throws InvalidPageRequestException {
+        PageRequest pageRequest = pageRequest(limit);
+        Optional<List<Message>> timeline = timelineCache.get(accountId, this::loadTimeline);
+
+        if (timeline.isPresent()) {
+            return slice(timeline.get(), cursor(after), pageRequest);
+        }
+
+        return messageStore.findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(accountId, cursor(after), pageRequest);
     }
 
+    /**
+     * This method queries the database for one page of the Messages posted by a specific Account in a time range,
+     * newest first
+     * @param accountId the ID of the Account whose Messages we wish to see
+     * @param since the earliest timePostedEpoch to include, or null for no lower bound
+     * @param until the latest timePostedEpoch to include, or null for no upper bound
+     * @param before the cursor returned with the previous page, or null to start from the newest message
+     * @param limit the maximum number of messages to return, or null for the default page size
+     * @return a Slice of the Messages posted by accountId between since and until
+     * @throws InvalidPageRequestException thrown if limit is less than 1, since is after until, or before is not a
+     *         cursor
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Slice<Message> getMessagesFromUserBetween(int accountId, Long since, Long until, String before, Integer limit)
+            throws InvalidPageRequestException {
+        long from = since(since, until);
+        TimeRangeCursor position = position(until, before);
+        return messageStore.findByPostedByAndTimePostedEpochBetweenNewestFirst(
+                accountId, from, position.getTimePostedEpoch(), position.getMessageId(), pageRequest(limit));
+    }
+
+    /**
+     * This method finds the cursor that a keyset page of an Account's Messages is returned with, without reading
+     * the page itself
+     * @param accountId the ID of the Account whose Messages we wish to see
+     * @param after the cursor returned with the previous page, or null to start from the beginning
+     * @param pageSize the resolved page size, see {@link #getPageSize(Integer)}
+     * @return the messageId of the last Message on the page if more messages follow it, otherwise empty
+     */
+    @Transactional(readOnly = true)
+    public Optional<Integer> getNextCursorFromUser(int accountId, Integer after, int pageSize) {
+        return nextCursor(messageStore.findMessageIdsByPostedByAtOffset(accountId, cursor(after), pageSize - 1));
+    }
+
+    /**
+     * This method returns the message count and the first and last timePostedEpoch of an Account's Messages from
+     * the in-memory counters, without querying the database
+     * @param accountId the ID of the Account whose stats we wish to see
+     * @return the Account's stats, or empty if no Account with accountId exists
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Optional<MessageStats> getAccountStats(int accountId) {
+        return accountIdIndex.exists(accountId) ? Optional.of(messageCounters.account(accountId)) : Optional.empty();
+    }
+
+    /**
+     * This method returns the count and the first and last timePostedEpoch of all Messages from the in-memory
+     * counters, without querying the database
+     * @return the stats of all Messages
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public MessageStats getMessageStats() {
+        return messageCounters.all();
+    }
+
+    /**
+     * This method loads the whole timeline of an Account for the timeline cache
+     * @param accountId the ID of the Account whose Messages we wish to cache
+     * @return the Account's Messages, or empty if there are too many to cache
+     */
+    private Optional<List<Message>> loadTimeline(int accountId) {
+        Slice<Message> messages = messageStore.findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(
+                accountId, 0, PageRequest.of(0, timelineCache.maximumMessagesPerAccount()));
+
+        return messages.hasNext() ? Optional.empty() : Optional.of(messages.getContent());
+    }
+
+    /**
+     * This method cuts one keyset page out of a cached timeline
+     * @param timeline the Account's Messages in messageId order
+     * @param after the messageId to seek past
+     * @param pageable the page size
+     * @return a Slice of the Messages whose IDs are greater than after
+     */
+    private Slice<Message> slice(List<Message> timeline, int after, Pageable pageable) {
+        int low = 0;
+        int high = timeline.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (timeline.get(middle).getMessageId() <= after) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int end = Math.min(low + pageable.getPageSize(), timeline.size());
+        return new SliceImpl<>(timeline.subList(low, end), pageable, end < timeline.size());
+    }
+
+    /**
+     * This method resolves the cursor of a keyset page request
+     * @param after the messageId the client last saw, or null
+     * @return the messageId to seek past
+     */
+    private int cursor(Integer after) {
+        return after == null ? 0 : after;
+    }
+
+    /**
+     * This method resolves the lower bound of a time range request
+     * @param since the earliest timePostedEpoch the client asked for, or null
+     * @param until the latest timePostedEpoch the client asked for, or null
+     * @return the earliest timePostedEpoch to include
+     * @throws InvalidPageRequestException thrown if since is after until
+     */
+    private long since(Long since, Long until) throws InvalidPageRequestException {
+        if (since != null && until != null && since > until) {
+            throw new InvalidPageRequestException("The time range must not start after it ends.");
+        }
+
+        return since == null ? Long.MIN_VALUE : since;
+    }
+
+    /**
+     * This method resolves where a time range request continues from
+     * @param until the latest timePostedEpoch the client asked for, or null
+     * @param before the cursor returned with the previous page, or null
+     * @return the position that every Message on the page must come after, whichever of until and the cursor is
+     *         further along
+     * @throws InvalidPageRequestException thrown if before is not a cursor
+     */
+    private TimeRangeCursor position(Long until, String before) throws InvalidPageRequestException {
+        TimeRangeCursor end = new TimeRangeCursor(until == null ? Long.MAX_VALUE : until, Integer.MAX_VALUE);
+        return before == null ? end : end.min(TimeRangeCursor.parse(before));
+    }
+
+    /**
+     * This method reads the cursor out of the IDs at the end of a page and just past it
+     * @param messageIds the last messageId of the page followed by the next one, if they exist
+     * @return the last messageId of the page if another message follows it, otherwise empty
+     */
+    private Optional<Integer> nextCursor(List<Integer> messageIds) {
+        return messageIds.size() < 2 ? Optional.empty() : Optional.of(messageIds.get(0));
+    }
+
+    /**
+     * This method builds the first-page request for a keyset query, capping the page size at maxPageSize
+     * @param limit the page size requested by the client, or null for the default page size
+     * @return a PageRequest for page 0 of the requested size
+     * @throws InvalidPageRequestException thrown if limit is less than 1
+     */
+    private PageRequest pageRequest(Integer limit) throws InvalidPageRequestException {
+        if (limit == null) {
+            return PageRequest.of(0, defaultPageSize);
+        }
+
+        if (limit < 1) {
+            throw new InvalidPageRequestException("The page limit must be at least 1.");
+        }
+
+        return PageRequest.of(0, Math.min(limit, maxPageSize));
+    }
 
     /**
      * This method will validate a Message to ensure that it can be added to the database
@@ -95,8 +563,7 @@ public class MessageService {
         boolean validMessage = isValidMessageText(message.getMessageText()) && isValidPostedBy(message.getPostedBy());
 
         if (!validMessage) {
-            throw new MessageCreationException("Sorry, we could not post that message. " +
-                    "Please make sure that your message is not empty, is less than 255 characters, and that you are logged in.");
+            throw new MessageCreationException(INVALID_MESSAGE);
         }
     }
 
@@ -107,42 +574,28 @@ public class MessageService {
      * @return true or false depending on whether the message text is valid
      */
     private boolean isValidMessageText(String messageText) {
-        return 0 < messageText.length() && messageText.length() <= 255;
+        return messageText != null && 0 < messageText.length() && messageText.length() <= 255;
     }
 
     /**
      * This method will determine of the postedBy field of a Message refers to a real, existing user.
+     * Existing users are found in the in-memory account index without querying the database.
      * @param postedBy the ID of a user that we want to validate exists
      * @return true or false depending on whether postedBy refers to a real, existing user.
      */
     private boolean isValidPostedBy(int postedBy) {
-        return accountRepository.findById(postedBy).isPresent();
+        return accountIdIndex.exists(postedBy);
     }
 
     /**
-     * This method validates if a Message can be updated, and throws the appropriate exceptions if it cannot
-     * @param messageId the ID of the Message we wish to update
+     * This method validates the new text of a Message that is being updated
      * @param messageText the new text of the Message
-     * @throws MessageNotFoundException thrown if no Message with messageId exists
      * @throws MessageCreationException thrown if the messageText is empty or more than 255 characters
      */
-    private void validateMessage(int messageId, String messageText) throws MessageNotFoundException, MessageCreationException{
-        if (!messageExists(messageId)) {
-            throw new MessageNotFoundException("The message you're trying to update was not found");
-        }
-
+    private void validateMessageText(String messageText) throws MessageCreationException {
         if (!isValidMessageText(messageText)) {
             throw new MessageCreationException("Sorry, we could not update that message " +
                     "because it is either empty or more than 255 characters.");
         }
     }
-
-    /**
-     * This method checks if a Message already exists
-     * @param messageId the ID of the Message we want to check exists
-     * @return true if the message exists, false otherwise
-     */
-    private boolean messageExists(int messageId) {
-        return messageRepository.findById(messageId).isPresent();
-    }
 }
@@ -0,0 +1,62 @@
+package com.example.service;
+
+import com.example.entity.Message;
+import com.example.exception.InvalidPageRequestException;
+
+/**
+ * A position in a time range listing, which runs newest first: the listing continues with the messages posted
+ * before timePostedEpoch, and those posted at it whose messageId is less than messageId. Sent to clients as
+ * {timePostedEpoch}:{messageId}, since timePostedEpoch alone does not tell apart the messages posted at the same time.
+ */
+public class TimeRangeCursor {
+    private final long timePostedEpoch;
+    private final int messageId;
+
+    public TimeRangeCursor(long timePostedEpoch, int messageId) {
+        this.timePostedEpoch = timePostedEpoch;
+        this.messageId = messageId;
+    }
+
+    /**
+     * @return the position just past a Message
+     */
+    public static TimeRangeCursor after(Message message) {
+        return new TimeRangeCursor(message.getTimePostedEpoch(), message.getMessageId());
+    }
+
+    /**
+     * @param cursor a cursor as sent to the client, see {@link #toString()}
+     * @throws InvalidPageRequestException thrown if cursor is not a timePostedEpoch:messageId pair
+     */
+    public static TimeRangeCursor parse(String cursor) throws InvalidPageRequestException {
+        int separator = cursor.indexOf(':');
+        try {
+            return new TimeRangeCursor(Long.parseLong(cursor.substring(0, Math.max(separator, 0))),
+                    Integer.parseInt(cursor.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new InvalidPageRequestException("The cursor must be a timePostedEpoch:messageId pair.");
+        }
+    }
+
+    /**
+     * @return whichever of the two positions comes later in the listing
+     */
+    public TimeRangeCursor min(TimeRangeCursor other) {
+        boolean earlier = timePostedEpoch < other.timePostedEpoch
+                || (timePostedEpoch == other.timePostedEpoch && messageId < other.messageId);
+        return earlier ? this : other;
+    }
+
+    public long getTimePostedEpoch() {
+        return timePostedEpoch;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    @Override
+    public String toString() {
+        return timePostedEpoch + ":" + messageId;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.h2.api.Trigger;
+
+/**
+ * H2 row trigger that records every insert, update and delete on the primary in the change_log table, in the same
+ * transaction as the change, so that a change is logged exactly when it commits. Only the table and primary key are
+ * logged; the {@link Replicator} copies the row as it is when it gets to the change. Installed on the account and
+ * message tables, whose first column is their primary key.
+ */
+public class ChangeLogTrigger implements Trigger {
+    private String tableName;
+
+    @Override
+    public void init(Connection connection, String schemaName, String triggerName, String tableName, boolean before, int type) {
+        this.tableName = tableName;
+    }
+
+    @Override
+    public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+        Object[] row = newRow != null ? newRow : oldRow;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into change_log (tableName, rowId, changedAt) values (?, ?, ?)")) {
+            insert.setString(1, tableName);
+            insert.setInt(2, ((Number) row[0]).intValue());
+            insert.setLong(3, System.currentTimeMillis());
+            insert.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.storage;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+/**
+ * File-backed storage, enabled with the durable profile (see application-durable.properties).
+ *
+ * data.sql drops and recreates the tables, which suits the in-memory database but would wipe a database file on
+ * every boot. In this profile data.sql only runs if the message table does not exist yet, i.e. on the first boot
+ * against a new file. Hibernate then adds the id sequences it needs (ddl-auto=update), and later boots find the
+ * schema and data as they were left.
+ */
+@Configuration
+@Profile("durable")
+public class DurableStorageConfiguration {
+    @Bean
+    public DataSourceScriptDatabaseInitializer dataSourceScriptDatabaseInitializer(DataSource dataSource) {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setDataLocations(List.of("classpath:data.sql"));
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        return new FirstBootInitializer(dataSource, settings);
+    }
+
+    /**
+     * Runs the initialization scripts only against a database without the message table
+     */
+    static class FirstBootInitializer extends DataSourceScriptDatabaseInitializer {
+        private static final Logger log = LoggerFactory.getLogger(FirstBootInitializer.class);
+
+        FirstBootInitializer(DataSource dataSource, DatabaseInitializationSettings settings) {
+            super(dataSource, settings);
+        }
+
+        @Override
+        public boolean initializeDatabase() {
+            if (schemaExists()) {
+                log.info("Keeping the existing schema and data");
+                return false;
+            }
+
+            log.info("Initializing a new database");
+            return super.initializeDatabase();
+        }
+
+        private boolean schemaExists() {
+            try (Connection connection = getDataSource().getConnection();
+                 ResultSet tables = connection.getMetaData().getTables(null, null, "MESSAGE", new String[] {"TABLE"})) {
+                return tables.next();
+            } catch (SQLException e) {
+                throw new DataAccessResourceFailureException("Could not look up the message table", e);
+            }
+        }
+    }
+}
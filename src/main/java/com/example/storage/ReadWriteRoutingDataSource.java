@@ -0,0 +1,36 @@
+package com.example.storage;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Hands out replica connections to read-only transactions while the replica is at most maxLagMillis behind the
+ * primary, and primary connections to everything else.
+ *
+ * The transaction manager takes its connection before it marks the transaction read-only, so this must sit behind a
+ * LazyConnectionDataSourceProxy, which only asks for a connection when the transaction runs its first statement.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    enum Target { PRIMARY, REPLICA }
+
+    private final Replicator replicator;
+    private final long maxLagMillis;
+
+    ReadWriteRoutingDataSource(DataSource primary, DataSource replica, Replicator replicator, long maxLagMillis) {
+        this.replicator = replicator;
+        this.maxLagMillis = maxLagMillis;
+        setTargetDataSources(Map.<Object, Object>of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean replicaCurrent = replicator.lagMillis() <= maxLagMillis;
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaCurrent ? Target.REPLICA : Target.PRIMARY;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.storage;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.example.cache.MessageCache;
+import com.example.cache.MessageVersions;
+import com.example.cache.TimelineCache;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Opt-in read replica, enabled with socialmedia.replica.enabled=true. Writes, and reads inside read-write
+ * transactions, go to the primary database configured by spring.datasource.*. Transactions marked
+ * {@code @Transactional(readOnly = true)} read from a second database at socialmedia.replica.url, which the
+ * {@link Replicator} keeps up to date asynchronously, so read traffic gets its own connection pool and database.
+ *
+ * A read from the replica may miss a write that committed shortly before it. While the replica is more than
+ * socialmedia.replica.max-lag behind, for instance during a burst of writes, read-only transactions go to the
+ * primary as well.
+ */
+@Configuration
+@ConditionalOnProperty(name = "socialmedia.replica.enabled", havingValue = "true")
+public class ReplicaConfiguration {
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${socialmedia.replica.url:jdbc:h2:mem:replica}") String url,
+                                              @Value("${socialmedia.replica.maximum-pool-size:10}") int maximumPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(properties.determineUsername());
+        dataSource.setPassword(properties.determinePassword());
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        return dataSource;
+    }
+
+    @Bean
+    public Replicator replicator(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource,
+                                 MessageCache messageCache, TimelineCache timelineCache, MessageVersions messageVersions,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${socialmedia.replica.batch-size:1000}") int batchSize,
+                                 @Value("${socialmedia.replica.poll-interval:PT0.01S}") Duration pollInterval) {
+        return new Replicator(primaryDataSource, replicaDataSource, messageCache, timelineCache, messageVersions,
+                meterRegistry, batchSize, pollInterval);
+    }
+
+    /**
+     * The DataSource that Hibernate, the transaction manager and the initialization scripts use
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, HikariDataSource replicaDataSource, Replicator replicator,
+                                 @Value("${socialmedia.replica.max-lag:PT1S}") Duration maxLag) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, replicator, maxLag.toMillis()));
+    }
+}
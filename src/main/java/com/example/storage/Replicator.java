@@ -0,0 +1,347 @@
+package com.example.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import com.example.cache.MessageCache;
+import com.example.cache.MessageVersions;
+import com.example.cache.TimelineCache;
+import com.example.entity.Message;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * Asynchronous replication of the account and message tables from the primary database to the replica that
+ * read-only transactions are routed to, see {@link ReplicaConfiguration}.
+ *
+ * On start the replica gets the primary's schema and a copy of both tables, and {@link ChangeLogTrigger} starts
+ * logging every change on the primary. A single thread then polls the change log, copies each changed row as it now
+ * is on the primary, deletes rows that are gone, and finally deletes the log entries it applied. Copying current
+ * rows instead of replaying statements makes every step idempotent: applying a change twice, or after a later change
+ * to the same row, leaves the replica the same.
+ *
+ * The lag is the time since the start of the last poll that emptied the log; every change committed before then is
+ * on the replica. It is published as socialmedia.replica.lag. Reads may have filled caches from the replica before a
+ * change reached it, so once a change is applied the cached copies are dropped and the list versions behind the
+ * ETags advance, exactly as the write itself did on the primary.
+ */
+public class Replicator implements SmartLifecycle {
+    public static final String METRIC_NAME = "socialmedia.replica.lag";
+
+    private static final Logger log = LoggerFactory.getLogger(Replicator.class);
+
+    // The statements of the primary's SCRIPT output that recreate its tables, indexes and constraints
+    private static final Pattern SCHEMA_STATEMENT = Pattern.compile("(?s)(CREATE (MEMORY |CACHED )?TABLE|CREATE (UNIQUE )?INDEX|ALTER TABLE) .*");
+
+    private static final Table ACCOUNT = new Table("account", "accountId", "username", "password");
+    private static final Table MESSAGE = new Table("message", "messageId", "postedBy", "messageText", "timePostedEpoch");
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final MessageCache messageCache;
+    private final TimelineCache timelineCache;
+    private final MessageVersions messageVersions;
+    private final int batchSize;
+    private final long pollIntervalNanos;
+
+    private Thread replicator;
+    private volatile boolean running;
+    // Every change committed on the primary before this time, in epoch millis, is on the replica; 0 until started
+    private volatile long replicatedUpTo;
+
+    /**
+     * @param primary the database that takes every write
+     * @param replica an empty database to copy the primary's tables to
+     * @param batchSize the maximum number of changes applied per replica transaction
+     * @param pollInterval how long to wait after the log was found empty before polling it again
+     */
+    public Replicator(DataSource primary, DataSource replica, MessageCache messageCache, TimelineCache timelineCache,
+                      MessageVersions messageVersions, MeterRegistry meterRegistry, int batchSize, Duration pollInterval) {
+        this.primary = primary;
+        this.replica = replica;
+        this.messageCache = messageCache;
+        this.timelineCache = timelineCache;
+        this.messageVersions = messageVersions;
+        this.batchSize = batchSize;
+        this.pollIntervalNanos = pollInterval.toNanos();
+        TimeGauge.builder(METRIC_NAME, this, TimeUnit.MILLISECONDS, Replicator::lagMillis)
+                .description("Time since the replica last caught up with every change committed on the primary")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copies the schema and contents of the primary to the replica, then starts applying changes. Runs once every
+     * bean is created, so after the primary has been initialized, and before the web server starts.
+     */
+    @Override
+    public void start() {
+        long start = System.currentTimeMillis();
+        try {
+            copySchema();
+            installChangeLog();
+            copyTable(ACCOUNT);
+            copyTable(MESSAGE);
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Could not copy the primary database to the replica", e);
+        }
+        replicatedUpTo = start;
+        log.info("Copied the primary database to the replica in {} ms", System.currentTimeMillis() - start);
+
+        running = true;
+        replicator = new Thread(this::run, "replicator");
+        replicator.setDaemon(true);
+        replicator.start();
+    }
+
+    /**
+     * Stops applying changes. Changes still in the log are applied by the next start.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        LockSupport.unpark(replicator);
+        try {
+            replicator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return how far, in milliseconds, the replica may be behind the primary; Long.MAX_VALUE before it is started
+     */
+    public long lagMillis() {
+        long upTo = replicatedUpTo;
+        return upTo == 0 ? Long.MAX_VALUE : Math.max(0, System.currentTimeMillis() - upTo);
+    }
+
+    private void run() {
+        while (running) {
+            long pollStart = System.currentTimeMillis();
+            try {
+                if (applyChanges() == batchSize) {
+                    continue;
+                }
+                replicatedUpTo = pollStart;
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Could not apply changes to the replica; retrying", e);
+            }
+            LockSupport.parkNanos(this, pollIntervalNanos);
+        }
+    }
+
+    private void copySchema() throws SQLException {
+        try (Connection from = primary.getConnection();
+             Connection to = replica.getConnection();
+             Statement script = from.createStatement();
+             Statement create = to.createStatement()) {
+            create.execute("drop table if exists message");
+            create.execute("drop table if exists account");
+            try (ResultSet statements = script.executeQuery("script nodata nopasswords nosettings table account, message")) {
+                while (statements.next()) {
+                    String statement = statements.getString(1);
+                    if (SCHEMA_STATEMENT.matcher(statement).matches()) {
+                        create.execute(statement);
+                    }
+                }
+            }
+        }
+    }
+
+    private void installChangeLog() throws SQLException {
+        try (Connection connection = primary.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists change_log (" +
+                    "changeId bigint generated by default as identity primary key, " +
+                    "tableName varchar(255) not null, " +
+                    "rowId int not null, " +
+                    "changedAt bigint not null)");
+            for (Table table : List.of(ACCOUNT, MESSAGE)) {
+                statement.execute("create trigger if not exists " + table.name + "_change_log " +
+                        "after insert, update, delete on " + table.name + " for each row " +
+                        "call '" + ChangeLogTrigger.class.getName() + "'");
+            }
+        }
+    }
+
+    private void copyTable(Table table) throws SQLException {
+        try (Connection from = primary.getConnection();
+             Connection to = replica.getConnection();
+             Statement select = from.createStatement();
+             ResultSet rows = select.executeQuery("select " + table.columnList() + " from " + table.name);
+             PreparedStatement insert = to.prepareStatement(table.merge())) {
+            to.setAutoCommit(false);
+            int batched = 0;
+            while (rows.next()) {
+                for (int i = 1; i <= table.columns.length; i++) {
+                    insert.setObject(i, rows.getObject(i));
+                }
+                insert.addBatch();
+                if (++batched % batchSize == 0) {
+                    insert.executeBatch();
+                    to.commit();
+                }
+            }
+            insert.executeBatch();
+            to.commit();
+        }
+    }
+
+    /**
+     * Applies the oldest changes in the log to the replica, in one replica transaction
+     * @return the number of log entries applied
+     */
+    private int applyChanges() throws SQLException {
+        List<Long> changeIds = new ArrayList<>();
+        Set<Integer> accountIds = new LinkedHashSet<>();
+        Set<Integer> messageIds = new LinkedHashSet<>();
+        Map<Integer, Object[]> accounts;
+        Map<Integer, Object[]> messages;
+        try (Connection from = primary.getConnection()) {
+            try (PreparedStatement select = from.prepareStatement(
+                    "select changeId, tableName, rowId from change_log order by changeId limit ?")) {
+                select.setInt(1, batchSize);
+                try (ResultSet changes = select.executeQuery()) {
+                    while (changes.next()) {
+                        changeIds.add(changes.getLong(1));
+                        (ACCOUNT.name.equalsIgnoreCase(changes.getString(2)) ? accountIds : messageIds).add(changes.getInt(3));
+                    }
+                }
+            }
+            if (changeIds.isEmpty()) {
+                return 0;
+            }
+
+            accounts = ACCOUNT.select(from, accountIds);
+            messages = MESSAGE.select(from, messageIds);
+        }
+
+        Map<Integer, Object[]> replacedMessages;
+        try (Connection to = replica.getConnection()) {
+            to.setAutoCommit(false);
+            replacedMessages = MESSAGE.select(to, messageIds);
+            // Accounts first, so that the messages they posted satisfy the foreign key
+            ACCOUNT.apply(to, accountIds, accounts);
+            MESSAGE.apply(to, messageIds, messages);
+            to.commit();
+        }
+
+        try (Connection from = primary.getConnection();
+             PreparedStatement delete = from.prepareStatement("delete from change_log where changeId = any(?)")) {
+            delete.setObject(1, changeIds.toArray(new Long[0]));
+            delete.executeUpdate();
+        }
+
+        for (int messageId : messageIds) {
+            messageCache.invalidate(messageId);
+            Object[] row = messages.containsKey(messageId) ? messages.get(messageId) : replacedMessages.get(messageId);
+            if (row != null) {
+                Message message = new Message((Integer) row[0], (Integer) row[1], (String) row[2], (Long) row[3]);
+                timelineCache.invalidate(message.getPostedBy());
+                messageVersions.changed(message);
+            }
+        }
+        return changeIds.size();
+    }
+
+    /**
+     * A replicated table, whose first column is its primary key
+     */
+    private static final class Table {
+        private final String name;
+        private final String[] columns;
+
+        private Table(String name, String... columns) {
+            this.name = name;
+            this.columns = columns;
+        }
+
+        private String columnList() {
+            return String.join(", ", columns);
+        }
+
+        private String merge() {
+            return "merge into " + name + " (" + columnList() + ") key (" + columns[0] + ") values (?" + ", ?".repeat(columns.length - 1) + ")";
+        }
+
+        /**
+         * @return the rows with the given keys, by key
+         */
+        private Map<Integer, Object[]> select(Connection connection, Collection<Integer> keys) throws SQLException {
+            Map<Integer, Object[]> rows = new HashMap<>();
+            if (keys.isEmpty()) {
+                return rows;
+            }
+
+            try (PreparedStatement select = connection.prepareStatement(
+                    "select " + columnList() + " from " + name + " where " + columns[0] + " = any(?)")) {
+                select.setObject(1, keys.toArray(new Integer[0]));
+                try (ResultSet result = select.executeQuery()) {
+                    while (result.next()) {
+                        Object[] row = new Object[columns.length];
+                        for (int i = 0; i < columns.length; i++) {
+                            row[i] = result.getObject(i + 1);
+                        }
+                        rows.put(result.getInt(1), row);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * Makes the rows with the given keys match the primary: merges the rows it still has and deletes the others
+         */
+        private void apply(Connection connection, Collection<Integer> keys, Map<Integer, Object[]> rows) throws SQLException {
+            if (keys.isEmpty()) {
+                return;
+            }
+
+            try (PreparedStatement merge = connection.prepareStatement(merge())) {
+                for (Object[] row : rows.values()) {
+                    for (int i = 0; i < columns.length; i++) {
+                        merge.setObject(i + 1, row[i]);
+                    }
+                    merge.addBatch();
+                }
+                merge.executeBatch();
+            }
+
+            List<Integer> deleted = new ArrayList<>(keys);
+            deleted.removeAll(rows.keySet());
+            if (!deleted.isEmpty()) {
+                try (PreparedStatement delete = connection.prepareStatement(
+                        "delete from " + name + " where " + columns[0] + " = any(?)")) {
+                    delete.setObject(1, deleted.toArray(new Integer[0]));
+                    delete.executeUpdate();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.storage;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Hands out connections to the shard that the current thread is working on, see {@link #on(int, Supplier)}, and to
+ * shard 0 otherwise. Shard 0 is the database configured by spring.datasource.*, which also holds the accounts and
+ * runs the initialization scripts.
+ *
+ * Like {@link ReadWriteRoutingDataSource}, this must sit behind a LazyConnectionDataSourceProxy, so that a
+ * transaction's connection is chosen by its first statement rather than when the transaction begins.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+    private static final ThreadLocal<Integer> currentShard = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    /**
+     * @param shards the database of every shard, shard 0 first; the pools of shards 1 and up are closed with this
+     */
+    ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    /**
+     * @return the number of shards
+     */
+    int count() {
+        return shards.size();
+    }
+
+    /**
+     * @return the number of connections that the pools of all shards can hand out at once
+     */
+    int maximumConnections() {
+        int connections = 0;
+        for (DataSource shard : shards) {
+            connections += shard instanceof HikariDataSource ? ((HikariDataSource) shard).getMaximumPoolSize() : 1;
+        }
+        return connections;
+    }
+
+    /**
+     * @return the database of one shard, bypassing the routing
+     */
+    DataSource shard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Runs work with every connection that this hands out on the current thread coming from one shard
+     */
+    static <T> T on(int shard, Supplier<T> work) {
+        Integer previous = currentShard.get();
+        currentShard.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                currentShard.remove();
+            } else {
+                currentShard.set(previous);
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentShard.get();
+    }
+
+    @Override
+    public void close() {
+        for (DataSource shard : shards.subList(1, shards.size())) {
+            if (shard instanceof HikariDataSource) {
+                ((HikariDataSource) shard).close();
+            }
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.example.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.repository.MessageStore;
+
+/**
+ * Messages partitioned by author over several databases, see {@link ShardingConfiguration}. A Message lives on shard
+ * postedBy mod shards, and its id encodes the same shard (see PooledIdGenerator), so:
+ *
+ * - lookups, updates and deletes by id, and every query of one Account's messages, run on a single shard;
+ * - findAll, the keyset listings and findAllById ask every shard they need in parallel and merge the answers in
+ *   messageId order.
+ *
+ * A Message written before sharding was enabled, or with an id that PooledIdGenerator did not hand out, can sit on
+ * its author's shard under an id that points elsewhere. A lookup, update or delete by id that misses on the id's
+ * shard therefore tries the other shards before giving up, so such Messages stay reachable at the cost of one query
+ * per shard for ids that do not exist.
+ *
+ * Each query runs in a transaction of its own on its shard, with the calling transaction suspended, since a
+ * transaction cannot span databases. A batch that spans shards is therefore saved in one transaction per shard, and
+ * is not atomic as a whole.
+ *
+ * On start the message table, its indexes and message_seq are copied from shard 0 to the shards that lack them,
+ * without the foreign key to account, which only shard 0 holds. Messages on shard 0 that belong to another shard,
+ * such as the data.sql fixtures, are then moved there. The number of shards must not change once messages are
+ * written, since ids would no longer point to the shard holding them.
+ */
+public class ShardedMessageStore implements MessageStore {
+    private static final Logger log = LoggerFactory.getLogger(ShardedMessageStore.class);
+
+    // The statements of shard 0's SCRIPT output that recreate the message table, its indexes and its primary key
+    private static final Pattern SCHEMA_STATEMENT = Pattern.compile("(?s)(CREATE (MEMORY |CACHED )?TABLE|CREATE (UNIQUE )?INDEX|ALTER TABLE) .*");
+
+    // Rows per query when streaming every message, matching the fetch size of the unsharded cursors
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    // Messages per JDBC batch when moving them off shard 0
+    private static final int MOVE_BATCH_SIZE = 1000;
+
+    // The order of the time range listings
+    private static final Comparator<Message> NEWEST_FIRST =
+            Comparator.comparing(Message::getTimePostedEpoch).thenComparing(Message::getMessageId).reversed();
+
+    private final MessageRepository messageRepository;
+    private final ShardRoutingDataSource shards;
+    private final TransactionTemplate readWrite;
+    private final TransactionTemplate readOnly;
+    private final ExecutorService executor;
+
+    public ShardedMessageStore(MessageRepository messageRepository, ShardRoutingDataSource shards,
+                               PlatformTransactionManager transactionManager) {
+        this.messageRepository = messageRepository;
+        this.shards = shards;
+        this.readWrite = new TransactionTemplate(transactionManager);
+        this.readWrite.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnly.setReadOnly(true);
+        // One thread per pooled connection, so that concurrent requests use every connection of every shard
+        this.executor = Executors.newFixedThreadPool(shards.maximumConnections(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gives every shard the message table and moves misplaced messages off shard 0. Runs after data.sql.
+     */
+    @PostConstruct
+    public void initialize() {
+        try {
+            for (int shard = 1; shard < shards.count(); shard++) {
+                copySchema(shard);
+            }
+            moveMessages();
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Could not prepare the message shards", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public int shardOf(Message message) {
+        return shardOfAccount(message.getPostedBy());
+    }
+
+    @Override
+    public <S extends Message> S save(S message) {
+        return onShard(shardOf(message), readWrite, () -> messageRepository.save(message));
+    }
+
+    @Override
+    public <S extends Message> List<S> saveAll(Iterable<S> messages) {
+        Map<Integer, List<Integer>> positions = new TreeMap<>();
+        List<S> saved = new ArrayList<>();
+        for (S message : messages) {
+            positions.computeIfAbsent(shardOf(message), shard -> new ArrayList<>()).add(saved.size());
+            saved.add(message);
+        }
+
+        positions.forEach((shard, indexes) -> {
+            List<S> group = new ArrayList<>(indexes.size());
+            indexes.forEach(index -> group.add(saved.get(index)));
+            List<S> savedGroup = onShard(shard, readWrite, () -> messageRepository.saveAll(group));
+            for (int i = 0; i < indexes.size(); i++) {
+                saved.set(indexes.get(i), savedGroup.get(i));
+            }
+        });
+        return saved;
+    }
+
+    @Override
+    public List<Message> findAll() {
+        return merge(gather(shard -> messageRepository.findAll()));
+    }
+
+    @Override
+    public Optional<Message> findById(Integer messageId) {
+        Optional<Message> message = onShard(shardOfMessage(messageId), readOnly, () -> messageRepository.findById(messageId));
+        if (message.isPresent()) {
+            return message;
+        }
+        return gatherOthers(shardOfMessage(messageId), shard -> messageRepository.findById(messageId)).stream()
+                .flatMap(Optional::stream)
+                .findFirst();
+    }
+
+    /**
+     * Looks up each ID on the shard that it points to, then the IDs not found there on every other shard
+     */
+    @Override
+    public List<Message> findAllById(Iterable<Integer> messageIds) {
+        Map<Integer, List<Integer>> byShard = new TreeMap<>();
+        for (Integer messageId : messageIds) {
+            byShard.computeIfAbsent(shardOfMessage(messageId), shard -> new ArrayList<>()).add(messageId);
+        }
+
+        List<CompletableFuture<List<Message>>> futures = new ArrayList<>();
+        byShard.forEach((shard, ids) ->
+                futures.add(onShardAsync(shard, () -> messageRepository.findAllById(ids))));
+        List<Message> messages = join(futures).stream().flatMap(List::stream).collect(Collectors.toList());
+
+        Set<Integer> missing = new HashSet<>();
+        byShard.values().forEach(missing::addAll);
+        messages.forEach(message -> missing.remove(message.getMessageId()));
+        if (!missing.isEmpty()) {
+            gather(shard -> messageRepository.findAllById(missing)).forEach(found -> found.stream()
+                    .filter(message -> missing.remove(message.getMessageId()))
+                    .forEach(messages::add));
+        }
+        return messages;
+    }
+
+    @Override
+    public Optional<Message> deleteByMessageIdReturning(int messageId) {
+        return onAnyShard(messageId, () -> messageRepository.deleteByMessageIdReturning(messageId));
+    }
+
+    @Override
+    public Optional<Message> updateByMessageIdAndMessageTextReturningPrevious(int messageId, String messageText) {
+        return onAnyShard(messageId, () -> messageRepository.updateByMessageIdAndMessageTextReturningPrevious(messageId, messageText));
+    }
+
+    @Override
+    public List<Message> findAllByPostedBy(int postedBy) {
+        return onShard(shardOfAccount(postedBy), readOnly, () -> messageRepository.findAllByPostedBy(postedBy));
+    }
+
+    /**
+     * Asks every shard for a page after messageId; the first pageSize of their messages, in ID order, are the page.
+     * More follow if the shards returned more than that, or if any shard has more than it returned.
+     */
+    @Override
+    public Slice<Message> findByMessageIdGreaterThanOrderByMessageIdAsc(int messageId, Pageable pageable) {
+        List<Slice<Message>> slices = gather(shard ->
+                messageRepository.findByMessageIdGreaterThanOrderByMessageIdAsc(messageId, pageable));
+        List<Message> messages = merge(slices.stream().map(Slice::getContent).collect(Collectors.toList()));
+        int pageSize = pageable.getPageSize();
+        boolean hasNext = messages.size() > pageSize || slices.stream().anyMatch(Slice::hasNext);
+        return new SliceImpl<>(messages.subList(0, Math.min(pageSize, messages.size())), pageable, hasNext);
+    }
+
+    @Override
+    public Slice<Message> findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(int postedBy, int messageId, Pageable pageable) {
+        return onShard(shardOfAccount(postedBy), readOnly,
+                () -> messageRepository.findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(postedBy, messageId, pageable));
+    }
+
+    /**
+     * Asks every shard for a page of the range; the newest pageSize of their messages are the page
+     */
+    @Override
+    public Slice<Message> findByTimePostedEpochBetweenNewestFirst(long since, long until, int before, Pageable pageable) {
+        List<Slice<Message>> slices = gather(shard ->
+                messageRepository.findByTimePostedEpochBetweenNewestFirst(since, until, before, pageable));
+        List<Message> messages = new ArrayList<>();
+        slices.forEach(slice -> messages.addAll(slice.getContent()));
+        messages.sort(NEWEST_FIRST);
+        int pageSize = pageable.getPageSize();
+        boolean hasNext = messages.size() > pageSize || slices.stream().anyMatch(Slice::hasNext);
+        return new SliceImpl<>(messages.subList(0, Math.min(pageSize, messages.size())), pageable, hasNext);
+    }
+
+    @Override
+    public Slice<Message> findByPostedByAndTimePostedEpochBetweenNewestFirst(int postedBy, long since, long until, int before,
+                                                                             Pageable pageable) {
+        return onShard(shardOfAccount(postedBy), readOnly,
+                () -> messageRepository.findByPostedByAndTimePostedEpochBetweenNewestFirst(postedBy, since, until, before, pageable));
+    }
+
+    /**
+     * Merges the first offset + 2 IDs after messageId of every shard, which hold the first offset + 2 of all shards
+     */
+    @Override
+    public List<Integer> findMessageIdsAtOffset(int messageId, int offset) {
+        List<Integer> messageIds = new ArrayList<>();
+        gather(shard -> messageRepository.findMessageIdsAfter(messageId, PageRequest.of(0, offset + 2))).forEach(messageIds::addAll);
+        messageIds.sort(null);
+        return messageIds.size() <= offset ? List.of() : messageIds.subList(offset, Math.min(offset + 2, messageIds.size()));
+    }
+
+    @Override
+    public List<Integer> findMessageIdsByPostedByAtOffset(int postedBy, int messageId, int offset) {
+        return onShard(shardOfAccount(postedBy), readOnly,
+                () -> messageRepository.findMessageIdsByPostedByAtOffset(postedBy, messageId, offset));
+    }
+
+    /**
+     * Pages through the merged keyset listing, one query per shard per page, instead of holding a cursor open on
+     * every shard. The Messages are detached, so the caller need not detach them.
+     */
+    @Override
+    public Stream<Message> streamAllByOrderByMessageIdAsc() {
+        PageRequest pageRequest = PageRequest.of(0, STREAM_PAGE_SIZE);
+        return Stream.iterate(findByMessageIdGreaterThanOrderByMessageIdAsc(0, pageRequest), Objects::nonNull,
+                        page -> page.hasNext() ? findByMessageIdGreaterThanOrderByMessageIdAsc(last(page.getContent()).getMessageId(), pageRequest) : null)
+                .flatMap(page -> page.getContent().stream());
+    }
+
+    /**
+     * Pages through the message texts of one shard after another, in no particular order
+     */
+    @Override
+    public Stream<Object[]> streamAllMessageTexts() {
+        PageRequest pageRequest = PageRequest.of(0, STREAM_PAGE_SIZE);
+        return IntStream.range(0, shards.count()).boxed().flatMap(shard -> {
+            IntFunction<List<Object[]>> pageAfter = messageId ->
+                    onShard(shard, readOnly, () -> messageRepository.findMessageTextsAfter(messageId, pageRequest));
+            return Stream.iterate(pageAfter.apply(0), Objects::nonNull,
+                            page -> page.size() < STREAM_PAGE_SIZE ? null : pageAfter.apply((Integer) last(page)[0]))
+                    .flatMap(List::stream);
+        });
+    }
+
+    /**
+     * Each Account's messages are on one shard, so the shards' groups are disjoint
+     */
+    @Override
+    public List<Object[]> countAllGroupByPostedBy() {
+        return gather(shard -> messageRepository.countAllGroupByPostedBy()).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Object[]> findTimePostedRangeByPostedBy(int postedBy) {
+        return onShard(shardOfAccount(postedBy), readOnly, () -> messageRepository.findTimePostedRangeByPostedBy(postedBy));
+    }
+
+    @Override
+    public List<Object[]> findTimePostedRange() {
+        Long first = null;
+        Long last = null;
+        for (List<Object[]> range : gather(shard -> messageRepository.findTimePostedRange())) {
+            Long shardFirst = (Long) range.get(0)[0];
+            Long shardLast = (Long) range.get(0)[1];
+            first = first == null || (shardFirst != null && shardFirst < first) ? shardFirst : first;
+            last = last == null || (shardLast != null && shardLast > last) ? shardLast : last;
+        }
+        return List.<Object[]>of(new Object[] {first, last});
+    }
+
+    private int shardOfAccount(int postedBy) {
+        return Math.floorMod(postedBy, shards.count());
+    }
+
+    private int shardOfMessage(int messageId) {
+        return Math.floorMod(messageId, shards.count());
+    }
+
+    /**
+     * Runs work in a new transaction on one shard
+     */
+    private <T> T onShard(int shard, TransactionTemplate transaction, Supplier<T> work) {
+        return ShardRoutingDataSource.on(shard, () -> transaction.execute(status -> work.get()));
+    }
+
+    /**
+     * Runs a write of one Message in a new transaction on the shard its id points to, then on each other shard in
+     * turn until one of them finds the Message
+     */
+    private Optional<Message> onAnyShard(int messageId, Supplier<Optional<Message>> write) {
+        int home = shardOfMessage(messageId);
+        Optional<Message> written = onShard(home, readWrite, write);
+        for (int shard = 0; shard < shards.count() && written.isEmpty(); shard++) {
+            if (shard != home) {
+                written = onShard(shard, readWrite, write);
+            }
+        }
+        return written;
+    }
+
+    private <T> CompletableFuture<T> onShardAsync(int shard, Supplier<T> work) {
+        return CompletableFuture.supplyAsync(() -> onShard(shard, readOnly, work), executor);
+    }
+
+    /**
+     * Runs a read-only query on every shard in parallel
+     * @return the answers, by shard
+     */
+    private <T> List<T> gather(IntFunction<T> query) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.count());
+        for (int shard = 0; shard < shards.count(); shard++) {
+            int target = shard;
+            futures.add(onShardAsync(target, () -> query.apply(target)));
+        }
+        return join(futures);
+    }
+
+    /**
+     * Runs a read-only query on every shard but one in parallel
+     * @return the answers, by shard
+     */
+    private <T> List<T> gatherOthers(int excluded, IntFunction<T> query) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.count() - 1);
+        for (int shard = 0; shard < shards.count(); shard++) {
+            if (shard != excluded) {
+                int target = shard;
+                futures.add(onShardAsync(target, () -> query.apply(target)));
+            }
+        }
+        return join(futures);
+    }
+
+    private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    private static List<Message> merge(List<List<Message>> shardMessages) {
+        List<Message> messages = new ArrayList<>();
+        shardMessages.forEach(messages::addAll);
+        messages.sort(Comparator.comparing(Message::getMessageId));
+        return messages;
+    }
+
+    private static <T> T last(List<T> list) {
+        return list.get(list.size() - 1);
+    }
+
+    private void copySchema(int shard) throws SQLException {
+        try (Connection to = shards.shard(shard).getConnection(); Statement create = to.createStatement()) {
+            try (ResultSet tables = create.executeQuery(
+                    "select count(*) from information_schema.tables where table_schema = 'PUBLIC' and table_name = 'MESSAGE'")) {
+                tables.next();
+                if (tables.getInt(1) > 0) {
+                    return;
+                }
+            }
+
+            try (Connection from = shards.shard(0).getConnection(); Statement script = from.createStatement()) {
+                try (ResultSet statements = script.executeQuery("script nodata nopasswords nosettings table message")) {
+                    while (statements.next()) {
+                        String statement = statements.getString(1);
+                        if (SCHEMA_STATEMENT.matcher(statement).matches() && !statement.contains("FOREIGN KEY")) {
+                            create.execute(statement);
+                        }
+                    }
+                }
+                try (ResultSet sequence = script.executeQuery(
+                        "select increment from information_schema.sequences where sequence_name = 'MESSAGE_SEQ'")) {
+                    if (sequence.next()) {
+                        create.execute("create sequence if not exists message_seq start with 1 increment by " + sequence.getLong(1));
+                    }
+                }
+            }
+        }
+        log.info("Created the message table on shard {}", shard);
+    }
+
+    /**
+     * Copies the messages on shard 0 that belong to another shard there, then deletes them from shard 0. Copies
+     * are merges on the primary key, so a move that failed half way is completed by the next start.
+     */
+    private void moveMessages() throws SQLException {
+        String columns = "messageId, postedBy, messageText, timePostedEpoch";
+        List<Connection> targets = new ArrayList<>();
+        try (Connection from = shards.shard(0).getConnection()) {
+            List<PreparedStatement> merges = new ArrayList<>();
+            merges.add(null);
+            for (int shard = 1; shard < shards.count(); shard++) {
+                Connection to = shards.shard(shard).getConnection();
+                targets.add(to);
+                merges.add(to.prepareStatement("merge into message (" + columns + ") key (messageId) values (?, ?, ?, ?)"));
+            }
+
+            int moved = 0;
+            try (PreparedStatement select = from.prepareStatement(
+                    "select " + columns + " from message where mod(postedBy, ?) <> 0")) {
+                select.setInt(1, shards.count());
+                try (ResultSet rows = select.executeQuery()) {
+                    while (rows.next()) {
+                        PreparedStatement merge = merges.get(shardOfAccount(rows.getInt(2)));
+                        for (int i = 1; i <= 4; i++) {
+                            merge.setObject(i, rows.getObject(i));
+                        }
+                        merge.addBatch();
+                        if (++moved % MOVE_BATCH_SIZE == 0) {
+                            executeBatches(merges);
+                        }
+                    }
+                }
+            }
+            executeBatches(merges);
+
+            try (PreparedStatement delete = from.prepareStatement("delete from message where mod(postedBy, ?) <> 0")) {
+                delete.setInt(1, shards.count());
+                delete.executeUpdate();
+            }
+            if (moved > 0) {
+                log.info("Moved {} messages from shard 0 to their shards", moved);
+            }
+        } finally {
+            for (Connection to : targets) {
+                to.close();
+            }
+        }
+    }
+
+    private static void executeBatches(List<PreparedStatement> statements) throws SQLException {
+        for (PreparedStatement statement : statements.subList(1, statements.size())) {
+            statement.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.id.PooledIdGenerator;
+import com.example.repository.MessageRepository;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Opt-in horizontal sharding of messages, enabled with socialmedia.sharding.enabled=true. Messages are partitioned
+ * by postedBy over the database configured by spring.datasource.*, which is shard 0 and keeps the accounts, and one
+ * database per entry of socialmedia.sharding.urls, see {@link ShardedMessageStore}.
+ *
+ * Cannot be combined with socialmedia.replica.enabled, which replicates a single primary database.
+ */
+@Configuration
+@ConditionalOnProperty(name = "socialmedia.sharding.enabled", havingValue = "true")
+public class ShardingConfiguration {
+    public ShardingConfiguration(@Value("${socialmedia.replica.enabled:false}") boolean replicaEnabled) {
+        if (replicaEnabled) {
+            throw new IllegalStateException("socialmedia.sharding.enabled cannot be combined with socialmedia.replica.enabled");
+        }
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource homeDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("shard0");
+        return dataSource;
+    }
+
+    @Bean
+    ShardRoutingDataSource shardRoutingDataSource(HikariDataSource homeDataSource, DataSourceProperties properties,
+                                                  @Value("${socialmedia.sharding.urls}") List<String> urls,
+                                                  @Value("${socialmedia.sharding.maximum-pool-size:10}") int maximumPoolSize) {
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(homeDataSource);
+        for (String url : urls) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("shard" + shards.size());
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(properties.determineUsername());
+            dataSource.setPassword(properties.determinePassword());
+            dataSource.setMaximumPoolSize(maximumPoolSize);
+            shards.add(dataSource);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * The DataSource that Hibernate, the transaction manager and the initialization scripts use
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    /**
+     * Makes Message ids encode their shard, see PooledIdGenerator
+     */
+    @Bean
+    HibernatePropertiesCustomizer shardedIdCustomizer(ShardRoutingDataSource shardRoutingDataSource) {
+        return properties -> properties.put(PooledIdGenerator.SHARDS, String.valueOf(shardRoutingDataSource.count()));
+    }
+
+    @Bean
+    @Primary
+    @DependsOnDatabaseInitialization
+    public ShardedMessageStore shardedMessageStore(MessageRepository messageRepository,
+                                                   ShardRoutingDataSource shardRoutingDataSource,
+                                                   PlatformTransactionManager transactionManager) {
+        return new ShardedMessageStore(messageRepository, shardRoutingDataSource, transactionManager);
+    }
+}
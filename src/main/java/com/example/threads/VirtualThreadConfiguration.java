@@ -0,0 +1,44 @@
+package com.example.threads;
+
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Opt-in mode, enabled with socialmedia.threads.virtual=true, that handles every request on its own virtual
+ * thread instead of Tomcat's bounded worker pool. Controller handlers and the @Transactional service calls they
+ * make run on that thread, so a request blocked on JDBC parks its virtual thread and frees the carrier. Streaming
+ * response bodies are written on virtual threads as well.
+ *
+ * Requires a Java 21 runtime; startup fails on older JVMs when the mode is enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "socialmedia.threads.virtual", havingValue = "true")
+public class VirtualThreadConfiguration implements WebMvcConfigurer {
+    private final ExecutorService requestExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor("http-virtual-");
+    private final ExecutorService asyncExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor("mvc-async-virtual-");
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(requestExecutor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(asyncExecutor));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdown();
+        asyncExecutor.shutdown();
+    }
+}
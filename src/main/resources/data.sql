@@ -2,7 +2,7 @@ drop table if exists message;
 drop table if exists account;
 create table account (
     accountId int primary key auto_increment,
-    username varchar(255) not null unique,
+    username varchar(255) not null constraint account_username_unique unique,
     password varchar(255)
 );
 create table message (
@@ -12,6 +12,10 @@ create table message (
     timePostedEpoch bigint,
     foreign key (postedBy) references account(accountId)
 );
+-- Per-account timelines and time-ordered reads seek on these instead of scanning the message table. H2 only reads
+-- an index forwards, so they are kept newest first, with the messageId as tie-breaker, for the time range listings
+create index message_postedBy_timePostedEpoch_idx on message (postedBy, timePostedEpoch desc, messageId desc);
+create index message_timePostedEpoch_idx on message (timePostedEpoch desc, messageId desc);
 
 -- Starting test values with ids of 9999 to avoid test issues
 insert into account values (9999, 'testuser1', 'password');
@@ -0,0 +1,129 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.metrics.ServiceTimingAspect;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+public class ConditionalGetTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient for interacting locally
+     * on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages, then again with If-None-Match holding its ETag
+     *
+     * Expected Response:
+     *  Status Code: 200 with an ETag, then 304 with the same ETag and an empty body, without calling MessageService
+     */
+    @Test
+    public void unchangedMessagesAreNotModified() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages", null);
+        Assertions.assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+
+        Timer reads = app.getBean(MeterRegistry.class).timer(ServiceTimingAspect.METRIC_NAME,
+                "class", "MessageService", "method", "getMessages", "exception", "none");
+        long readsBefore = reads.count();
+        HttpResponse<String> second = get("/messages", etag);
+        Assertions.assertEquals(304, second.statusCode());
+        Assertions.assertEquals("", second.body());
+        Assertions.assertEquals(etag, second.headers().firstValue("ETag").orElseThrow());
+        Assertions.assertEquals(readsBefore, reads.count());
+
+        Assertions.assertEquals(200, get("/messages?limit=1", etag).statusCode());
+    }
+
+    /**
+     * Creating, updating and deleting messages between conditional requests to GET localhost:8080/messages and
+     * GET localhost:8080/accounts/{account_id}/messages
+     *
+     * Expected Response:
+     *  Status Code: 200 with a new ETag after every write, for the global list and the writer's timeline;
+     *  304 for the timeline of an account that did not write
+     */
+    @Test
+    public void writesChangeTheETag() throws IOException, InterruptedException {
+        String all = get("/messages", null).headers().firstValue("ETag").orElseThrow();
+        String writer = get("/accounts/9999/messages", null).headers().firstValue("ETag").orElseThrow();
+        String other = get("/accounts/9997/messages", null).headers().firstValue("ETag").orElseThrow();
+
+        HttpRequest create = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"new\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(create, HttpResponse.BodyHandlers.ofString()).statusCode());
+        all = assertChanged("/messages", all);
+        writer = assertChanged("/accounts/9999/messages", writer);
+        Assertions.assertEquals(304, get("/accounts/9997/messages", other).statusCode());
+
+        HttpRequest update = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"changed\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(update, HttpResponse.BodyHandlers.ofString()).statusCode());
+        all = assertChanged("/messages", all);
+        writer = assertChanged("/accounts/9999/messages", writer);
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertChanged("/messages", all);
+        assertChanged("/accounts/9999/messages", writer);
+        Assertions.assertEquals(304, get("/accounts/9997/messages", other).statusCode());
+    }
+
+    /**
+     * @return the new ETag, after asserting that the old one no longer matches
+     */
+    private String assertChanged(String path, String etag) throws IOException, InterruptedException {
+        HttpResponse<String> response = get(path, etag);
+        Assertions.assertEquals(200, response.statusCode(), path);
+        String changed = response.headers().firstValue("ETag").orElseThrow();
+        Assertions.assertNotEquals(etag, changed, path);
+        return changed;
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
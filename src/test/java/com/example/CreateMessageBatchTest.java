@@ -0,0 +1,142 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CreateMessageBatchTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with valid and invalid messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one result per message, in request order. Valid messages are created, invalid ones rejected.
+     */
+    @Test
+    public void createMessageBatchReportsEachMessage() throws IOException, InterruptedException {
+        String json = "[{\"postedBy\":9999,\"messageText\":\"first\",\"timePostedEpoch\":1669947792}," +
+                "{\"postedBy\":9999,\"messageText\":\"\",\"timePostedEpoch\":1669947792}," +
+                "{\"postedBy\":1234,\"messageText\":\"nobody\",\"timePostedEpoch\":1669947792}," +
+                "{\"postedBy\":9998,\"messageText\":\"second\",\"timePostedEpoch\":1669947793}]";
+        HttpResponse<String> response = postBatch(json);
+        Assertions.assertEquals(200, response.statusCode());
+
+        JsonNode results = objectMapper.readTree(response.body());
+        Assertions.assertEquals(4, results.size());
+        Assertions.assertEquals(200, results.get(0).get("status").asInt());
+        Assertions.assertEquals(400, results.get(1).get("status").asInt());
+        Assertions.assertEquals(400, results.get(2).get("status").asInt());
+        Assertions.assertEquals(200, results.get(3).get("status").asInt());
+        Assertions.assertTrue(results.get(1).has("error"));
+        Assertions.assertFalse(results.get(1).has("message"));
+
+        Message first = objectMapper.treeToValue(results.get(0).get("message"), Message.class);
+        Message second = objectMapper.treeToValue(results.get(3).get("message"), Message.class);
+        Assertions.assertEquals(new Message(1, 9999, "first", 1669947792L), first);
+        Assertions.assertEquals(new Message(2, 9998, "second", 1669947793L), second);
+
+        List<Message> timeline = List.of(objectMapper.readValue(get("/accounts/9998/messages").body(), Message[].class));
+        Assertions.assertEquals(List.of(second), timeline);
+    }
+
+    /**
+     * Accounts inserted without going through AccountService are not in the account index, so the batch must
+     * find them in the database.
+     */
+    @Test
+    public void createMessageBatchFindsAccountsMissingFromIndex() throws IOException, InterruptedException {
+        app.getBean(JdbcTemplate.class).update("insert into account values (5000, 'behind the index', 'password')");
+
+        String json = "[{\"postedBy\":5000,\"messageText\":\"hello\",\"timePostedEpoch\":1669947792}]";
+        JsonNode results = objectMapper.readTree(postBatch(json).body());
+        Assertions.assertEquals(200, results.get(0).get("status").asInt());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with an empty list
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: an empty list
+     */
+    @Test
+    public void createMessageBatchEmpty() throws IOException, InterruptedException {
+        HttpResponse<String> response = postBatch("[]");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(0, objectMapper.readTree(response.body()).size());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/batch with more messages than
+     * socialmedia.messages.max-batch-size
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessageBatchTooLarge() throws IOException, InterruptedException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1001; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"postedBy\":9999,\"messageText\":\"m\",\"timePostedEpoch\":1669947792}");
+        }
+        json.append("]");
+
+        Assertions.assertEquals(400, postBatch(json.toString()).statusCode());
+        Assertions.assertEquals(3, objectMapper.readTree(get("/messages").body()).size());
+    }
+
+    private HttpResponse<String> postBatch(String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/batch"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
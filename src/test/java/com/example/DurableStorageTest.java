@@ -0,0 +1,121 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.index.MessageTextIndex;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class DurableStorageTest {
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Before every test, create a new webClient and ObjectMapper for interacting locally on the web. Each test
+     * starts the app itself, with the durable profile and a new database directory.
+     */
+    @BeforeEach
+    public void setUp() {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * Creating, updating and deleting messages, then restarting the app against the same database file
+     *
+     * Expected Response:
+     *  After the restart, GET localhost:8080/messages returns the messages as they were left, and the data.sql
+     *  fixtures were neither restored nor duplicated
+     */
+    @Test
+    public void restartKeepsData() throws IOException, InterruptedException {
+        ApplicationContext app = start();
+        Message created;
+        try {
+            HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"kept\",\"timePostedEpoch\":1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            created = objectMapper.readValue(response.body(), Message.class);
+            webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/9997"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"changed\"}"))
+                    .header("Content-Type", "application/json")
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/9996"))
+                    .DELETE()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+        } finally {
+            SpringApplication.exit(app);
+        }
+
+        app = start();
+        try {
+            HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            List<Message> expectedResult = List.of(
+                    new Message(created.getMessageId(), 9999, "kept", 1669947792L),
+                    new Message(9997, 9997, "changed", 1669947792L),
+                    new Message(9999, 9999, "test message 1", 1669947792L));
+            List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+            Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+        } finally {
+            SpringApplication.exit(app);
+        }
+    }
+
+    /**
+     * Searching once the search index has loaded in the background, as it does with the durable profile
+     *
+     * Expected Response:
+     *  Status Code: 200 with the matching message
+     */
+    @Test
+    public void searchIndexLoadsInBackground() throws IOException, InterruptedException {
+        ApplicationContext app = start();
+        try {
+            MessageTextIndex messageTextIndex = app.getBean(MessageTextIndex.class);
+            for (int i = 0; i < 100 && !messageTextIndex.isLoaded(); i++) {
+                Thread.sleep(100);
+            }
+            HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/search?q=2"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode());
+            List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+            Assertions.assertEquals(List.of(new Message(9997, 9997, "test message 2", 1669947792L)), actualResult);
+        } finally {
+            SpringApplication.exit(app);
+        }
+    }
+
+    private ApplicationContext start() throws InterruptedException {
+        String[] args = new String[] {
+                "--spring.profiles.active=durable",
+                "--socialmedia.storage.directory=" + directory
+        };
+        ApplicationContext app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+        return app;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.cache.MessageVersions;
+import com.example.cache.TimelineCache;
+import com.example.entity.Message;
+import com.example.index.MessageCounters;
+import com.example.index.MessageTextIndex;
+import com.example.repository.MessageStore;
+import com.example.service.GroupCommitWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GroupCommitTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app with group commit enabled, and create a new webClient
+     * and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {
+                "--socialmedia.messages.group-commit.enabled=true",
+                "--socialmedia.messages.group-commit.max-delay=PT0.05S",
+                "--socialmedia.cache.timelines.verify=true"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending 200 concurrent http requests to POST localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request
+     *  Response Body: each Message with its own messageId, and every Message readable afterwards.
+     *  Fewer commits than Messages.
+     */
+    @Test
+    public void concurrentMessagesShareCommits() throws IOException, InterruptedException {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String json = "{\"postedBy\":9999,\"messageText\":\"message " + i + "\",\"timePostedEpoch\":1669947792}";
+            responses.add(webClient.sendAsync(post(json), HttpResponse.BodyHandlers.ofString()));
+        }
+
+        Set<Integer> messageIds = new HashSet<>();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            Assertions.assertEquals(200, response.join().statusCode());
+            Message message = objectMapper.readValue(response.join().body(), Message.class);
+            Assertions.assertNotNull(message.getMessageId());
+            messageIds.add(message.getMessageId());
+        }
+        Assertions.assertEquals(200, messageIds.size());
+
+        HttpRequest timeline = HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/accounts/9999/messages")).build();
+        Message[] messages = objectMapper.readValue(webClient.send(timeline, HttpResponse.BodyHandlers.ofString()).body(), Message[].class);
+        Assertions.assertEquals(201, messages.length);
+
+        DistributionSummary groups = app.getBean(MeterRegistry.class).get(GroupCommitWriter.METRIC_NAME).summary();
+        Assertions.assertEquals(200, groups.totalAmount());
+        Assertions.assertTrue(groups.count() < 200, "200 messages took " + groups.count() + " commits");
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with an empty message
+     *
+     * Expected Response:
+     *  Status Code: 400, before anything is queued
+     */
+    @Test
+    public void invalidMessageIsRejected() throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(post("{\"postedBy\":9999,\"messageText\":\"\",\"timePostedEpoch\":1669947792}"),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, response.statusCode());
+        Assertions.assertEquals(0, app.getBean(MeterRegistry.class).get(GroupCommitWriter.METRIC_NAME).summary().count());
+    }
+
+    /**
+     * Writing through a group commit writer whose thread dies from an Error while saving
+     *
+     * Expected Response:
+     *  The waiting write fails instead of blocking forever, and later writes are turned away so that their callers
+     *  insert the Messages themselves
+     */
+    @Test
+    public void writerFailureReleasesWaiters() throws InterruptedException {
+        MessageStore failingStore = (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class<?>[] {MessageStore.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("shardOf")) {
+                        return 0;
+                    }
+                    throw new OutOfMemoryError("simulated");
+                });
+        GroupCommitWriter writer = new GroupCommitWriter(failingStore, app.getBean(TimelineCache.class),
+                app.getBean(MessageTextIndex.class), app.getBean(MessageVersions.class), app.getBean(MessageCounters.class),
+                app.getBean(PlatformTransactionManager.class), new SimpleMeterRegistry(), 100, Duration.ofMillis(50), 100);
+        writer.start();
+
+        IllegalStateException failure = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                Assertions.assertThrows(IllegalStateException.class,
+                        () -> writer.write(new Message(9999, "lost writer", 1669947792L))));
+        Assertions.assertTrue(failure.getCause() instanceof OutOfMemoryError);
+        Assertions.assertFalse(writer.write(new Message(9999, "after the failure", 1669947792L)));
+        writer.stop();
+    }
+
+    private HttpRequest post(String json) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.service.AccountService;
+import com.example.service.MessageBatchResult;
+import com.example.service.MessageService;
+
+/**
+ * Ids are generated in blocks by PooledIdGenerator, one sequence per entity, skipping the ids of the data.sql
+ * fixtures.
+ */
+public class IdGenerationTest {
+    ApplicationContext app;
+
+    @AfterEach
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * A block of ids costs one sequence call, so 100 messages advance message_seq by at most three blocks:
+     * the initial value, and the high ends of the first two blocks.
+     */
+    @Test
+    public void idsAreAllocatedInBlocks() {
+        app = SpringApplication.run(SocialMediaApp.class);
+        List<MessageBatchResult> results = app.getBean(MessageService.class).createMessages(messages(100));
+
+        for (int i = 0; i < results.size(); i++) {
+            Assertions.assertEquals(i + 1, results.get(i).getMessage().getMessageId());
+        }
+
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        String sequence = "select %s from information_schema.sequences where sequence_name = 'MESSAGE_SEQ'";
+        Assertions.assertEquals(50, jdbcTemplate.queryForObject(String.format(sequence, "increment"), Long.class));
+        Assertions.assertTrue(jdbcTemplate.queryForObject(String.format(sequence, "base_value"), Long.class) <= 151);
+    }
+
+    /**
+     * Generating 10,000 messages runs through the 9996-9999 fixture ids without a key violation.
+     */
+    @Test
+    public void fixtureIdsAreSkipped() {
+        app = SpringApplication.run(SocialMediaApp.class);
+        MessageService messageService = app.getBean(MessageService.class);
+
+        List<Integer> ids = new ArrayList<>();
+        for (int batch = 0; batch < 10; batch++) {
+            messageService.createMessages(messages(1000)).forEach(result -> ids.add(result.getMessage().getMessageId()));
+        }
+
+        Assertions.assertEquals(List.of(9994, 9995, 10000, 10001), ids.subList(9993, 9997));
+        Assertions.assertEquals(10003, messageService.getMessages().size());
+    }
+
+    /**
+     * Accounts use their own sequence, so registering does not consume message ids and vice versa.
+     */
+    @Test
+    public void accountsHaveTheirOwnSequence() {
+        app = SpringApplication.run(SocialMediaApp.class, "--spring.jpa.properties.socialmedia.id.reserved-from=2",
+                "--spring.jpa.properties.socialmedia.id.reserved-to=3");
+        AccountService accountService = app.getBean(AccountService.class);
+        app.getBean(MessageService.class).createMessages(messages(1));
+
+        List<Integer> accountIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Account account = new Account("user" + i, "password");
+            accountService.register(account);
+            accountIds.add(account.getAccountId());
+        }
+
+        Assertions.assertEquals(List.of(1, 4, 5), accountIds);
+    }
+
+    private static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new Message(9999, "message " + i, 1669947792L));
+        }
+        return messages;
+    }
+}
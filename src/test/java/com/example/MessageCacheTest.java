@@ -0,0 +1,102 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.cache.MessageCache;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+public class MessageCacheTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Reading the same message twice should query the database once and serve the second read from the cache.
+     */
+    @Test
+    public void repeatedReadIsCacheHit() throws IOException, InterruptedException {
+        MessageCache messageCache = app.getBean(MessageCache.class);
+        CacheStats before = messageCache.stats();
+        getMessage(9999);
+        Message actualResult = getMessage(9999);
+        CacheStats after = messageCache.stats().minus(before);
+        Assertions.assertEquals(new Message(9999, 9999, "test message 1", 1669947792L), actualResult);
+        Assertions.assertEquals(1, after.missCount(), "Expected one miss, but stats were " + after);
+        Assertions.assertEquals(1, after.hitCount(), "Expected one hit, but stats were " + after);
+    }
+
+    /**
+     * A PATCH through the bulk update query must invalidate the cached message.
+     */
+    @Test
+    public void updateInvalidatesCachedMessage() throws IOException, InterruptedException {
+        getMessage(9999);
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"text changed\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Message expectedResult = new Message(9999, 9999, "text changed", 1669947792L);
+        Message actualResult = getMessage(9999);
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    /**
+     * A DELETE must invalidate the cached message.
+     */
+    @Test
+    public void deleteInvalidatesCachedMessage() throws IOException, InterruptedException {
+        getMessage(9999);
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .DELETE()
+                .build();
+        HttpResponse<String> response = webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertNull(getMessage(9999), "Expected the deleted message to be gone");
+    }
+
+    private Message getMessage(int messageId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response.body().isEmpty() ? null : objectMapper.readValue(response.body(), Message.class);
+    }
+}
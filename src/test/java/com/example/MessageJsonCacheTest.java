@@ -0,0 +1,104 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.cache.MessageJsonCache;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+public class MessageJsonCacheTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient for interacting locally
+     * on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Reading the message list twice should serialize each message once, and write exactly what Jackson writes.
+     */
+    @Test
+    public void repeatedListIsAssembledFromCache() throws IOException, InterruptedException {
+        MessageJsonCache messageJsonCache = app.getBean(MessageJsonCache.class);
+        CacheStats before = messageJsonCache.stats();
+        HttpResponse<String> first = get("/messages");
+        HttpResponse<String> second = get("/messages");
+        CacheStats after = messageJsonCache.stats().minus(before);
+
+        List<Message> expected = List.of(
+                new Message(9996, 9996, "test message 3", 1669947792L),
+                new Message(9997, 9997, "test message 2", 1669947792L),
+                new Message(9999, 9999, "test message 1", 1669947792L));
+        Assertions.assertEquals(app.getBean(ObjectMapper.class).writeValueAsString(expected), second.body());
+        Assertions.assertEquals(first.body(), second.body());
+        Assertions.assertEquals("application/json", second.headers().firstValue("Content-Type").orElseThrow());
+        Assertions.assertEquals(3, after.missCount(), "Expected three misses, but stats were " + after);
+        Assertions.assertEquals(3, after.hitCount(), "Expected three hits, but stats were " + after);
+    }
+
+    /**
+     * A PATCH must change the JSON served for the message, in lists and on its own.
+     */
+    @Test
+    public void updateReplacesCachedJson() throws IOException, InterruptedException {
+        get("/accounts/9999/messages");
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"text changed\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        String changed = "{\"messageId\":9999,\"postedBy\":9999,\"messageText\":\"text changed\",\"timePostedEpoch\":1669947792}";
+        Assertions.assertEquals("[" + changed + "]", get("/accounts/9999/messages").body());
+        Assertions.assertEquals(changed, get("/messages/9999").body());
+    }
+
+    /**
+     * A Message that differs from its cached JSON must be serialized again, even without an invalidation.
+     */
+    @Test
+    public void changedMessageIsNeverServedStale() {
+        MessageJsonCache messageJsonCache = app.getBean(MessageJsonCache.class);
+        messageJsonCache.get(new Message(1, 9999, "before", 1669947792L));
+        String json = new String(messageJsonCache.get(new Message(1, 9999, "after", 1669947792L)));
+        Assertions.assertEquals("{\"messageId\":1,\"postedBy\":9999,\"messageText\":\"after\",\"timePostedEpoch\":1669947792}", json);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.index.MessageCounters;
+import com.example.service.MessageService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageStatsTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Reading the stats counted from the fixtures at startup
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one message for account 9999, none for account 9998, three in total
+     */
+    @Test
+    public void statsAreCountedAtStartup() throws IOException, InterruptedException {
+        assertStats(get("/accounts/9999/stats"), 1, 1669947792L, 1669947792L);
+        assertStats(get("/accounts/9998/stats"), 0, null, null);
+        assertStats(get("/messages/stats"), 3, 1669947792L, 1669947792L);
+    }
+
+    /**
+     * Reading the stats of an account that does not exist
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: empty
+     */
+    @Test
+    public void unknownAccountHasNoStats() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/stats");
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("", response.body());
+    }
+
+    /**
+     * Creating two messages and then deleting the later one
+     *
+     * Expected Response:
+     *  Each write moves the count and the first and last times; deleting the last message brings back the previous
+     *  last time, both for the account and in total
+     */
+    @Test
+    public void writesUpdateStats() throws IOException, InterruptedException {
+        post("{\"postedBy\":9998,\"messageText\":\"first\",\"timePostedEpoch\":1669900000}");
+        Message last = objectMapper.readValue(
+                post("{\"postedBy\":9998,\"messageText\":\"last\",\"timePostedEpoch\":1670000000}").body(), Message.class);
+
+        assertStats(get("/accounts/9998/stats"), 2, 1669900000L, 1670000000L);
+        assertStats(get("/messages/stats"), 5, 1669900000L, 1670000000L);
+
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + last.getMessageId()))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        assertStats(get("/accounts/9998/stats"), 1, 1669900000L, 1669900000L);
+        assertStats(get("/messages/stats"), 4, 1669900000L, 1669947792L);
+    }
+
+    /**
+     * Reconciling after a message was inserted behind the application's back
+     *
+     * Expected Response:
+     *  POST localhost:8082/actuator/messagestats corrects the account's stats and the total; the API port 8080 does
+     *  not serve it
+     */
+    @Test
+    public void reconcileCorrectsDrift() throws IOException, InterruptedException {
+        app.getBean(JdbcTemplate.class).update("insert into message values (5000, 9996, 'inserted directly', 1669000000)");
+        assertStats(get("/accounts/9996/stats"), 1, 1669947792L, 1669947792L);
+
+        Assertions.assertEquals(404, webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/actuator/messagestats"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8082/actuator/messagestats"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        Assertions.assertEquals(200, response.statusCode());
+        JsonNode reconciliation = objectMapper.readTree(response.body());
+        Assertions.assertEquals(1, reconciliation.get("corrected").asInt());
+        Assertions.assertEquals(0, reconciliation.get("skipped").asInt());
+        assertStats(get("/accounts/9996/stats"), 2, 1669000000L, 1669947792L);
+        assertStats(get("/messages/stats"), 4, 1669000000L, 1669947792L);
+    }
+
+    /**
+     * Reconciling while a delete of account 9997's message has not yet committed
+     *
+     * Expected Response:
+     *  Only account 9997 is skipped; the other accounts are reconciled
+     */
+    @Test
+    public void reconcileSkipsOnlyTheDeletingAccount() {
+        MessageService messageService = app.getBean(MessageService.class);
+        MessageCounters messageCounters = app.getBean(MessageCounters.class);
+        new TransactionTemplate(app.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            Assertions.assertEquals(1, messageService.deleteMessageById(9997));
+            MessageCounters.Reconciliation reconciliation = CompletableFuture.supplyAsync(messageCounters::reconcile).join();
+            Assertions.assertEquals(1, reconciliation.getSkipped());
+        });
+    }
+
+    private void assertStats(HttpResponse<String> response, long messageCount, Long first, Long last) throws IOException {
+        Assertions.assertEquals(200, response.statusCode());
+        JsonNode stats = objectMapper.readTree(response.body());
+        Assertions.assertEquals(messageCount, stats.get("messageCount").asLong(), response.body());
+        Assertions.assertEquals(first, stats.get("firstTimePostedEpoch").isNull() ? null : stats.get("firstTimePostedEpoch").asLong(), response.body());
+        Assertions.assertEquals(last, stats.get("lastTimePostedEpoch").isNull() ? null : stats.get("lastTimePostedEpoch").asLong(), response.body());
+    }
+
+    private HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,83 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class MetricsTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending requests to the API, then an http request to GET localhost:8082/actuator/prometheus
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text format, with handler and service timers, Hibernate statistics, connection
+     *  pool gauges and a counter for the exception that was handled
+     */
+    @Test
+    public void prometheusEndpointExposesMetrics() throws IOException, InterruptedException {
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"hello\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build());
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser1\",\"password\":\"wrong\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8082/actuator/prometheus"))
+                .build());
+        Assertions.assertEquals(200, response.statusCode());
+
+        String metrics = response.body();
+        assertContains(metrics, "http_server_requests_seconds_count{exception=\"None\",method=\"POST\",outcome=\"SUCCESS\",status=\"200\",uri=\"/messages\",}");
+        assertContains(metrics, "socialmedia_service_seconds_count{class=\"MessageService\",exception=\"none\",method=\"createMessage\",}");
+        assertContains(metrics, "socialmedia_service_seconds_count{class=\"AccountService\",exception=\"AuthenticationException\",method=\"login\",}");
+        assertContains(metrics, "socialmedia_exceptions_total{exception=\"AuthenticationException\",}");
+        assertContains(metrics, "hibernate_statements_total");
+        assertContains(metrics, "hibernate_entities_loads_total");
+        assertContains(metrics, "hibernate_flushes_total");
+        assertContains(metrics, "hikaricp_connections_active");
+        assertContains(metrics, "hikaricp_connections_pending");
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void assertContains(String metrics, String expected) {
+        Assertions.assertTrue(metrics.contains(expected), "Missing " + expected + " in:\n" + metrics);
+    }
+}
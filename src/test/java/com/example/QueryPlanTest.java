@@ -0,0 +1,159 @@
+package com.example;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.repository.AccountRepository;
+import com.example.repository.MessageRepository;
+
+/**
+ * Captures the SQL that Hibernate generates for every repository query, runs it through H2's EXPLAIN, and fails
+ * if the plan reads a table with a tableScan instead of an index. Queries that list a whole table on purpose
+ * are named in FULL_LISTINGS and skipped. Every query method declared on a repository must be checked here.
+ */
+public class QueryPlanTest {
+    // Queries that return every row of a table, where a scan is the correct plan
+    private static final Set<String> FULL_LISTINGS = Set.of("findAll", "countAllGroupByPostedBy", "streamAllByOrderByMessageIdAsc", "streamAllMessageTexts", "findAllAccountIds", "findAllUsernames");
+
+    // SELECT * FROM FINAL TABLE (UPDATE ...) and the like
+    private static final Pattern DELTA_TABLE = Pattern.compile("(?is).*\\bFROM\\s+(?:OLD|NEW|FINAL)\\s+TABLE\\s*\\((.*)\\)\\s*");
+
+    // CRUD writes redeclared on a repository only to resolve an ambiguity with MessageStore
+    private static final Set<String> REDECLARED_CRUD = Set.of("save");
+
+    ApplicationContext app;
+    MessageRepository messageRepository;
+    AccountRepository accountRepository;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    Set<String> checkedMethods = new TreeSet<>();
+
+    /**
+     * Hibernate statement inspector that records every SQL string sent to the database.
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+        static final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        String[] args = new String[] {
+                "--spring.jpa.properties.hibernate.session_factory.statement_inspector=" + RecordingStatementInspector.class.getName()
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        messageRepository = app.getBean(MessageRepository.class);
+        accountRepository = app.getBean(AccountRepository.class);
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        transactionTemplate = new TransactionTemplate(app.getBean(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SpringApplication.exit(app);
+    }
+
+    @Test
+    public void messageQueriesUseIndexes() {
+        assertIndexed("findById", () -> messageRepository.findById(9999));
+        assertIndexed("findAllByPostedBy", () -> messageRepository.findAllByPostedBy(9999));
+        assertIndexed("findByMessageIdGreaterThanOrderByMessageIdAsc",
+                () -> messageRepository.findByMessageIdGreaterThanOrderByMessageIdAsc(9997, PageRequest.of(0, 10)));
+        assertIndexed("findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc",
+                () -> messageRepository.findByPostedByAndMessageIdGreaterThanOrderByMessageIdAsc(9999, 0, PageRequest.of(0, 10)));
+        assertIndexed("findByTimePostedEpochBetweenNewestFirst",
+                () -> messageRepository.findByTimePostedEpochBetweenNewestFirst(1669900000L, 1670000000L, Integer.MAX_VALUE, PageRequest.of(0, 10)));
+        assertIndexed("findByPostedByAndTimePostedEpochBetweenNewestFirst",
+                () -> messageRepository.findByPostedByAndTimePostedEpochBetweenNewestFirst(9999, 1669900000L, 1670000000L, Integer.MAX_VALUE, PageRequest.of(0, 10)));
+        assertIndexed("findMessageIdsAtOffset", () -> messageRepository.findMessageIdsAtOffset(0, 1));
+        assertIndexed("findMessageIdsByPostedByAtOffset", () -> messageRepository.findMessageIdsByPostedByAtOffset(9999, 0, 1));
+        assertIndexed("findMessageIdsAfter", () -> messageRepository.findMessageIdsAfter(9997, PageRequest.of(0, 10)));
+        assertIndexed("findMessageTextsAfter", () -> messageRepository.findMessageTextsAfter(9997, PageRequest.of(0, 10)));
+        assertIndexed("findTimePostedRangeByPostedBy", () -> messageRepository.findTimePostedRangeByPostedBy(9999));
+        assertIndexed("findTimePostedRange", () -> messageRepository.findTimePostedRange());
+        assertIndexed("updateByMessageIdAndMessageTextReturningPrevious",
+                () -> messageRepository.updateByMessageIdAndMessageTextReturningPrevious(9999, "text changed"));
+        assertIndexed("updateRowByMessageIdAndMessageTextReturningPrevious",
+                () -> messageRepository.updateRowByMessageIdAndMessageTextReturningPrevious(9999, "text changed"));
+        assertIndexed("deleteByMessageIdReturning", () -> messageRepository.deleteByMessageIdReturning(9999));
+        assertIndexed("deleteRowByMessageIdReturning", () -> messageRepository.deleteRowByMessageIdReturning(9999));
+
+        assertAllChecked(MessageRepository.class);
+    }
+
+    @Test
+    public void accountQueriesUseIndexes() {
+        assertIndexed("findById", () -> accountRepository.findById(9999));
+        assertIndexed("findByUsername", () -> accountRepository.findByUsername("testuser1"));
+        assertIndexed("findByUsernameAndPassword", () -> accountRepository.findByUsernameAndPassword("testuser1", "password"));
+        assertIndexed("findExistingAccountIds", () -> accountRepository.findExistingAccountIds(List.of(9998, 9999)));
+
+        assertAllChecked(AccountRepository.class);
+    }
+
+    /**
+     * Runs a repository call in a transaction that is rolled back, then EXPLAINs every statement it issued.
+     */
+    private void assertIndexed(String methodName, Runnable query) {
+        RecordingStatementInspector.statements.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            query.run();
+            status.setRollbackOnly();
+        });
+
+        List<String> statements = new ArrayList<>(RecordingStatementInspector.statements);
+        Assertions.assertFalse(statements.isEmpty(), methodName + " did not issue any SQL");
+
+        for (String statement : statements) {
+            // H2 cannot EXPLAIN into a data change delta table, so explain the statement inside it instead
+            Matcher deltaTable = DELTA_TABLE.matcher(statement);
+            String sql = deltaTable.matches() ? deltaTable.group(1) : statement;
+            Object[] parameters = Stream.generate(() -> (Object) 1)
+                    .limit(sql.chars().filter(c -> c == '?').count())
+                    .toArray();
+            String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, parameters));
+            Assertions.assertFalse(plan.contains("tableScan"), methodName + " falls back to a table scan:\n" + plan);
+        }
+
+        checkedMethods.add(methodName);
+    }
+
+    /**
+     * Fails if a query method declared on the repository has no plan check in this class.
+     */
+    private void assertAllChecked(Class<?> repository) {
+        Set<String> declared = Arrays.stream(repository.getDeclaredMethods())
+                .filter(method -> !method.isSynthetic())
+                .map(Method::getName)
+                .filter(name -> !FULL_LISTINGS.contains(name) && !REDECLARED_CRUD.contains(name))
+                .collect(Collectors.toCollection(TreeSet::new));
+        declared.removeAll(checkedMethods);
+        Assertions.assertTrue(declared.isEmpty(), "Query methods without a plan check in QueryPlanTest: " + declared);
+    }
+}
@@ -0,0 +1,232 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.metrics.ServiceTimingAspect;
+import com.example.reactive.ReactiveServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+public class ReactiveMessageApiTest {
+    private static final String MVC = "http://localhost:8080";
+    private static final String REACTIVE = "http://localhost:8081";
+
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app with the reactive API enabled, and create a new
+     * webClient.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {
+                "--socialmedia.reactive.enabled=true",
+                "--socialmedia.reactive.chunk-size=100"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending the same read requests to the MVC and the reactive API
+     *
+     * Expected Response:
+     *  The same status code, body, paging header and ETag from both
+     */
+    @Test
+    public void readsMatchMvc() throws IOException, InterruptedException {
+        Assertions.assertEquals(8081, app.getBean(ReactiveServer.class).getPort());
+        insertMessages(250);
+
+        String[] paths = {
+                "/messages",
+                "/messages?after=9996&limit=1",
+                "/messages?limit=100",
+                "/messages?after=10100&limit=100",
+                "/messages?after=10200&limit=100",
+                "/messages?limit=0",
+                "/messages/9999",
+                "/messages/123456",
+                "/accounts/9999/messages",
+                "/accounts/9998/messages?limit=40",
+                "/accounts/9998/messages?after=10001&limit=1000",
+                "/accounts/1234/messages",
+                "/accounts/9999/messages?limit=-1",
+                "/messages?since=1669947800&limit=10",
+                "/messages?until=1669947900&before=1669947850:10058&limit=5",
+                "/messages?since=1669947800&until=1669947900",
+                "/accounts/9998/messages?since=1669947800&until=1669947900&limit=7",
+                "/accounts/9999/messages?until=1669947792",
+                "/messages?since=1669947900&until=1669947800",
+                "/messages?after=10001&since=1669947800",
+                "/messages?before=10058",
+                "/messages/search?q=message&limit=100",
+                "/messages/search?q=message&after=200&limit=100",
+                "/messages/search?q=test%20message%201",
+                "/messages/search?q=%20",
+                "/messages/stats",
+                "/accounts/9998/stats",
+                "/accounts/1234/stats"
+        };
+        for (String path : paths) {
+            assertSameResponse(HttpRequest.newBuilder().GET(), path, "Accept", "application/json");
+            assertSameResponse(HttpRequest.newBuilder().GET(), path, "Accept", "*/*");
+        }
+        assertSameResponse(HttpRequest.newBuilder().GET(), "/messages", "Accept", "application/x-ndjson");
+
+        // Spring MVC answers malformed input with a timestamped error document, so only the status is compared
+        Assertions.assertEquals(400, send(REACTIVE, HttpRequest.newBuilder().GET(), "/messages?limit=abc").statusCode());
+        Assertions.assertEquals(400, send(MVC, HttpRequest.newBuilder().GET(), "/messages?limit=abc").statusCode());
+    }
+
+    /**
+     * Sending writes to the reactive API, each followed by the same write to the MVC API
+     *
+     * Expected Response:
+     *  The same status code and body from both, apart from the generated messageId
+     */
+    @Test
+    public void writesMatchMvc() throws IOException, InterruptedException {
+        String created = "{\"postedBy\":9999,\"messageText\":\"hello\",\"timePostedEpoch\":1669947792}";
+        HttpResponse<String> reactive = send(REACTIVE, post(created), "/messages");
+        HttpResponse<String> mvc = send(MVC, post(created), "/messages");
+        Assertions.assertEquals(200, reactive.statusCode());
+        Assertions.assertEquals(mvc.body().replaceAll("\"messageId\":\\d+", ""), reactive.body().replaceAll("\"messageId\":\\d+", ""));
+
+        String[] invalid = {
+                "{\"postedBy\":9999,\"messageText\":\"\",\"timePostedEpoch\":1669947792}",
+                "{\"postedBy\":1234,\"messageText\":\"nobody\",\"timePostedEpoch\":1669947792}"
+        };
+        for (String json : invalid) {
+            assertSameResponse(post(json), "/messages");
+        }
+        Assertions.assertEquals(400, send(REACTIVE, post("not json"), "/messages").statusCode());
+        assertSameResponse(post("[]"), "/messages/batch");
+        assertSameResponse(post("[" + invalid[0] + "," + invalid[1] + "]"), "/messages/batch");
+
+        assertSameResponse(patch("{\"messageText\":\"\"}"), "/messages/9999");
+        assertSameResponse(patch("{\"messageText\":\"changed\"}"), "/messages/123456");
+        assertSameResponse(patch("{\"messageText\":\"changed\"}"), "/messages/9999");
+        assertSameResponse(patch("{\"messageText\":\"changed again\"}"), "/messages/9999",
+                "Prefer", "return=representation");
+
+        HttpResponse<String> deleted = send(REACTIVE, HttpRequest.newBuilder().DELETE(), "/messages/9997");
+        Assertions.assertEquals(200, deleted.statusCode());
+        Assertions.assertEquals("1", deleted.body());
+        assertSameResponse(HttpRequest.newBuilder().DELETE(), "/messages/9997");
+        assertSameResponse(HttpRequest.newBuilder().GET(), "/messages/9997");
+    }
+
+    /**
+     * Streaming 100,000 messages (about 10 MB) as NDJSON to a client that stops reading after the first line
+     *
+     * Expected Response:
+     *  Once the socket buffers are full, the server stops querying further chunks while the client is not reading,
+     *  and the client receives every message once it resumes
+     */
+    @Test
+    public void streamFollowsClientDemand() throws IOException, InterruptedException {
+        insertMessages(100_000);
+        Timer chunks = app.getBean(MeterRegistry.class).timer(ServiceTimingAspect.METRIC_NAME,
+                "class", "MessageService", "method", "getMessages", "exception", "none");
+
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("localhost", 8081));
+            OutputStream output = socket.getOutputStream();
+            output.write(("GET /messages HTTP/1.1\r\nHost: localhost\r\nAccept: application/x-ndjson\r\n" +
+                    "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 1024);
+            Assertions.assertEquals("HTTP/1.1 200 OK", reader.readLine());
+            // Wait until no chunk has been queried for a second, i.e. the stream has stalled on the full socket
+            long queriedWhilePaused = -1;
+            for (int i = 0; i < 30 && chunks.count() != queriedWhilePaused; i++) {
+                queriedWhilePaused = chunks.count();
+                Thread.sleep(1000);
+            }
+            Assertions.assertTrue(queriedWhilePaused < 500, queriedWhilePaused + " of 1001 chunks were queried for a paused client");
+
+            List<String> lines = new ArrayList<>();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("{")) {
+                    lines.add(line);
+                }
+            }
+            Assertions.assertEquals(100_003, lines.size());
+        }
+    }
+
+    private void insertMessages(int count) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            rows.add(new Object[] {10_000 + i, i % 2 == 0 ? 9998 : 9999, "message " + i, 1669947792L + i});
+        }
+        app.getBean(JdbcTemplate.class).batchUpdate("insert into message values (?, ?, ?, ?)", rows);
+    }
+
+    private void assertSameResponse(HttpRequest.Builder request, String path, String... headers)
+            throws IOException, InterruptedException {
+        HttpResponse<String> mvc = send(MVC, request, path, headers);
+        HttpResponse<String> reactive = send(REACTIVE, request, path, headers);
+        String description = path + " " + List.of(headers);
+
+        Assertions.assertEquals(mvc.statusCode(), reactive.statusCode(), description);
+        Assertions.assertEquals(mvc.body(), reactive.body(), description);
+        Assertions.assertEquals(mvc.headers().firstValue("X-Next-Cursor"), reactive.headers().firstValue("X-Next-Cursor"), description);
+        Assertions.assertEquals(mvc.headers().firstValue("Preference-Applied"), reactive.headers().firstValue("Preference-Applied"), description);
+        Assertions.assertEquals(mvc.headers().firstValue("ETag"), reactive.headers().firstValue("ETag"), description);
+    }
+
+    private HttpResponse<String> send(String baseUri, HttpRequest.Builder request, String path, String... headers)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder copy = request.copy().uri(URI.create(baseUri + path));
+        for (int i = 0; i < headers.length; i += 2) {
+            copy.header(headers[i], headers[i + 1]);
+        }
+        return webClient.send(copy.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest.Builder post(String json) {
+        return HttpRequest.newBuilder()
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json");
+    }
+
+    private static HttpRequest.Builder patch(String json) {
+        return HttpRequest.newBuilder()
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json");
+    }
+}
@@ -0,0 +1,143 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.example.storage.Replicator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ReadReplicaTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JdbcTemplate replica;
+
+    /**
+     * Before every test, reset the database, restart the app with a read replica, and create a new webClient and
+     * ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {
+                "--socialmedia.replica.enabled=true",
+                "--socialmedia.replica.max-lag=PT0.5S"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        replica = new JdbcTemplate(app.getBean("replicaDataSource", DataSource.class));
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Reading a message that only the replica holds
+     *
+     * Expected Response:
+     *  GET localhost:8080/messages/{message_id} is a read-only transaction, so it finds the message
+     */
+    @Test
+    public void readOnlyTransactionsReadFromReplica() throws IOException, InterruptedException {
+        replica.update("insert into message values (5000, 9999, 'only on the replica', 1669947792)");
+
+        HttpResponse<String> response = get("/messages/5000");
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(new Message(5000, 9999, "only on the replica", 1669947792L),
+                objectMapper.readValue(response.body(), Message.class));
+    }
+
+    /**
+     * Creating, updating and deleting messages on the primary
+     *
+     * Expected Response:
+     *  Each change reaches the replica shortly after it commits, and reads of the changed messages, from the
+     *  replica, then show it
+     */
+    @Test
+    public void writesReachReplica() throws IOException, InterruptedException {
+        HttpResponse<String> created = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"replicated\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        int messageId = objectMapper.readValue(created.body(), Message.class).getMessageId();
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9997"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"changed\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9996"))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        awaitReplica(() -> replica.queryForObject("select count(*) from message where messageId = ?", Integer.class, messageId) == 1
+                && replica.queryForObject("select count(*) from message where messageId = 9996", Integer.class) == 0
+                && "changed".equals(replica.queryForObject("select messageText from message where messageId = 9997", String.class)));
+
+        List<Message> expectedResult = List.of(
+                new Message(messageId, 9999, "replicated", 1669947792L),
+                new Message(9997, 9997, "changed", 1669947792L),
+                new Message(9999, 9999, "test message 1", 1669947792L));
+        List<Message> actualResult = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+        Assertions.assertEquals("", get("/messages/9996").body());
+        Assertions.assertTrue(app.getBean(Replicator.class).lagMillis() < 500);
+    }
+
+    /**
+     * Reading while the replica has fallen further behind than socialmedia.replica.max-lag
+     *
+     * Expected Response:
+     *  Read-only transactions go to the primary, which does not hold the replica-only message
+     */
+    @Test
+    public void laggingReplicaIsBypassed() throws IOException, InterruptedException {
+        Replicator replicator = app.getBean(Replicator.class);
+        replicator.stop();
+        replica.update("insert into message values (5000, 9999, 'only on the replica', 1669947792)");
+        awaitReplica(() -> replicator.lagMillis() > 500);
+
+        HttpResponse<String> response = get("/messages/5000");
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("", response.body());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void awaitReplica(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertTrue(condition.getAsBoolean(), "The replica did not catch up");
+    }
+}
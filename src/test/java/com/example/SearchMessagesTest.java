@@ -0,0 +1,212 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.example.index.MessageTextIndex;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SearchMessagesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=Message 2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message containing both words first, then the messages containing the more common word,
+     *  newest first
+     *  X-Next-Cursor: absent
+     */
+    @Test
+    public void searchRanksRareTermsFirst() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("Message 2", "");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(List.of(
+                new Message(9997, 9997, "test message 2", 1669947792L),
+                new Message(9999, 9999, "test message 1", 1669947792L),
+                new Message(9996, 9996, "test message 3", 1669947792L)), messages(response));
+        Assertions.assertEquals(Optional.empty(), response.headers().firstValue("X-Next-Cursor"));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search?q=message 2&limit=2, then following the cursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the first two ranked messages, then the last one
+     *  X-Next-Cursor: 2 on the first page, absent on the last
+     */
+    @Test
+    public void searchPaginatesByRank() throws IOException, InterruptedException {
+        HttpResponse<String> first = search("message 2", "&limit=2");
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals(List.of(9997, 9999), messageIds(first));
+        Assertions.assertEquals(Optional.of("2"), first.headers().firstValue("X-Next-Cursor"));
+
+        HttpResponse<String> last = search("message 2", "&limit=2&after=2");
+        Assertions.assertEquals(200, last.statusCode());
+        Assertions.assertEquals(List.of(9996), messageIds(last));
+        Assertions.assertEquals(Optional.empty(), last.headers().firstValue("X-Next-Cursor"));
+    }
+
+    /**
+     * Creating, updating and deleting messages, then searching for their words
+     *
+     * Expected Response:
+     *  The created message is found by its new word, the updated message only by its new text, and the deleted
+     *  message not at all.
+     */
+    @Test
+    public void searchFollowsWrites() throws IOException, InterruptedException {
+        HttpRequest create = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"hello search\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Message created = objectMapper.readValue(webClient.send(create, HttpResponse.BodyHandlers.ofString()).body(), Message.class);
+        Assertions.assertEquals(List.of(created.getMessageId()), messageIds(search("hello", "")));
+
+        HttpRequest update = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9997"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"rewritten\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(update, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(List.of(9997), messageIds(search("rewritten", "")));
+        Assertions.assertEquals(List.of(), messageIds(search("2", "")));
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9996"))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(List.of(9999), messageIds(search("test", "")));
+    }
+
+    /**
+     * Paging through GET localhost:8080/messages/search?q=apple&limit=2 after the best-ranked message was rewritten
+     * behind the index's back, leaving a stale posting at rank 0
+     *
+     * Expected Response:
+     *  The stale hit is skipped, and every message that still contains the word is returned exactly once, newest
+     *  first
+     */
+    @Test
+    public void searchSkipsStalePostings() throws IOException, InterruptedException {
+        List<Integer> created = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            HttpRequest create = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\":\"apple " + i + "\",\"timePostedEpoch\":1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            created.add(objectMapper.readValue(webClient.send(create, HttpResponse.BodyHandlers.ofString()).body(), Message.class).getMessageId());
+        }
+        app.getBean(JdbcTemplate.class).update("update message set messageText = 'banana' where messageId = ?", created.get(3));
+
+        List<Integer> found = new ArrayList<>();
+        String parameters = "&limit=2";
+        for (int pages = 0; pages < 5; pages++) {
+            HttpResponse<String> response = search("apple", parameters);
+            Assertions.assertEquals(200, response.statusCode());
+            found.addAll(messageIds(response));
+            Optional<String> next = response.headers().firstValue("X-Next-Cursor");
+            if (next.isEmpty()) {
+                break;
+            }
+            parameters = "&limit=2&after=" + next.get();
+        }
+        Assertions.assertEquals(List.of(created.get(2), created.get(1), created.get(0)), found);
+    }
+
+    /**
+     * Updating message 9997 from "test message 2" to "rewritten words" through PATCH localhost:8080/messages/9997
+     *
+     * Expected Response:
+     *  The index itself no longer holds the terms the update took away, and holds the new ones
+     */
+    @Test
+    public void updateReplacesTermsInIndex() throws IOException, InterruptedException {
+        HttpRequest update = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9997"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"rewritten words\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(update, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        MessageTextIndex messageTextIndex = app.getBean(MessageTextIndex.class);
+        Assertions.assertEquals(List.of(), messageTextIndex.search(List.of("2"), 0, 10));
+        Assertions.assertEquals(List.of(9999, 9996), messageTextIndex.search(List.of("test"), 0, 10));
+        Assertions.assertEquals(List.of(9997), messageTextIndex.search(List.of("rewritten"), 0, 10));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/search with no words, or too many
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchWithoutTermsIsRejected() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, search("", "").statusCode());
+        Assertions.assertEquals(400, search("?!", "").statusCode());
+        Assertions.assertEquals(400, search("a b c d e f g h i", "").statusCode());
+        Assertions.assertEquals(400, search("test", "&limit=0").statusCode());
+    }
+
+    private HttpResponse<String> search(String query, String parameters) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + parameters))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Message> messages(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private List<Integer> messageIds(HttpResponse<String> response) throws IOException {
+        return messages(response).stream().map(Message::getMessageId).toList();
+    }
+}
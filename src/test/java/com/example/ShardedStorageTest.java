@@ -0,0 +1,224 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.example.controller.SocialMediaController;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ShardedStorageTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the databases, restart the app with messages sharded over three databases, and create
+     * a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {
+                "--socialmedia.sharding.enabled=true",
+                "--socialmedia.sharding.urls=jdbc:h2:mem:shard1,jdbc:h2:mem:shard2"
+        };
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Listing and reading the fixture messages, which start on shard 0 and are moved to their authors' shards
+     *
+     * Expected Response:
+     *  Every message is listed once, in messageId order, and each can be read by its id
+     */
+    @Test
+    public void fixturesAreSpreadOverShards() throws IOException, InterruptedException {
+        Assertions.assertEquals(1, shard(1).queryForObject("select count(*) from message where messageId = 9997", Integer.class));
+        Assertions.assertEquals(0, shard(0).queryForObject("select count(*) from message where messageId = 9997", Integer.class));
+
+        List<Message> expectedResult = List.of(
+                new Message(9996, 9996, "test message 3", 1669947792L),
+                new Message(9997, 9997, "test message 2", 1669947792L),
+                new Message(9999, 9999, "test message 1", 1669947792L));
+        List<Message> actualResult = objectMapper.readValue(get("/messages").body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+        Assertions.assertEquals(new Message(9997, 9997, "test message 2", 1669947792L),
+                objectMapper.readValue(get("/messages/9997").body(), Message.class));
+    }
+
+    /**
+     * Creating a message, then reading, updating, listing, searching and deleting it
+     *
+     * Expected Response:
+     *  The message is stored on its author's shard, its id points to that shard, and every request finds it there
+     */
+    @Test
+    public void messageLivesOnItsAuthorsShard() throws IOException, InterruptedException {
+        HttpResponse<String> created = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9998,\"messageText\":\"sharded words\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, created.statusCode());
+        int messageId = objectMapper.readValue(created.body(), Message.class).getMessageId();
+        Assertions.assertEquals(2, messageId % 3);
+        Assertions.assertEquals(1, shard(2).queryForObject("select count(*) from message where messageId = ?", Integer.class, messageId));
+
+        HttpResponse<String> updated = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"changed words\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("1", updated.body());
+        Message expected = new Message(messageId, 9998, "changed words", 1669947792L);
+        Assertions.assertEquals(expected, objectMapper.readValue(get("/messages/" + messageId).body(), Message.class));
+        Assertions.assertEquals(List.of(expected), objectMapper.readValue(get("/accounts/9998/messages").body(),
+                new TypeReference<List<Message>>(){}));
+        Assertions.assertEquals(List.of(expected), objectMapper.readValue(get("/messages/search?q=changed").body(),
+                new TypeReference<List<Message>>(){}));
+
+        HttpResponse<String> deleted = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("1", deleted.body());
+        Assertions.assertEquals(0, shard(2).queryForObject("select count(*) from message where messageId = ?", Integer.class, messageId));
+    }
+
+    /**
+     * Reading, updating and deleting a message stored on its author's shard 0 under an id that points to shard 1, as
+     * one written before sharding was enabled would be
+     *
+     * Expected Response:
+     *  Every request by id finds the message on shard 0
+     */
+    @Test
+    public void messageWithIdOfAnotherShardIsReachable() throws IOException, InterruptedException {
+        shard(0).update("insert into message values (10000, 9999, 'written before sharding', 1669947792)");
+        Message expected = new Message(10000, 9999, "written before sharding", 1669947792L);
+        Assertions.assertEquals(expected, objectMapper.readValue(get("/messages/10000").body(), Message.class));
+
+        HttpResponse<String> updated = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/10000"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"changed\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("1", updated.body());
+        Assertions.assertEquals("changed", shard(0).queryForObject("select messageText from message where messageId = 10000", String.class));
+
+        delete(10000);
+        Assertions.assertEquals(0, shard(0).queryForObject("select count(*) from message where messageId = 10000", Integer.class));
+        Assertions.assertEquals("", get("/messages/10000").body());
+    }
+
+    /**
+     * Paging through the listing of all messages, which spans every shard, one message at a time
+     *
+     * Expected Response:
+     *  Each page holds the next message in messageId order, with a cursor until the last page
+     */
+    @Test
+    public void keysetPagesSpanShards() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages?limit=2");
+        Assertions.assertEquals(List.of(
+                        new Message(9996, 9996, "test message 3", 1669947792L),
+                        new Message(9997, 9997, "test message 2", 1669947792L)),
+                objectMapper.readValue(first.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertEquals("9997", first.headers().firstValue(SocialMediaController.NEXT_CURSOR_HEADER).orElse(null));
+
+        HttpResponse<String> last = get("/messages?limit=2&after=9997");
+        Assertions.assertEquals(List.of(new Message(9999, 9999, "test message 1", 1669947792L)),
+                objectMapper.readValue(last.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertTrue(last.headers().firstValue(SocialMediaController.NEXT_CURSOR_HEADER).isEmpty());
+    }
+
+    /**
+     * Paging through the listing of all messages, one at a time, once every message is on shard 0
+     *
+     * Expected Response:
+     *  The first page carries a cursor, although the other shards have no messages
+     */
+    @Test
+    public void keysetPagesOnOneShard() throws IOException, InterruptedException {
+        delete(9996);
+        delete(9997);
+        Message created = post("{\"postedBy\":9999,\"messageText\":\"also on shard 0\",\"timePostedEpoch\":1669947792}");
+
+        HttpResponse<String> first = get("/messages?limit=1");
+        Assertions.assertEquals(List.of(created), objectMapper.readValue(first.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertEquals(String.valueOf(created.getMessageId()),
+                first.headers().firstValue(SocialMediaController.NEXT_CURSOR_HEADER).orElse(null));
+    }
+
+    /**
+     * Paging through the messages posted up to a time, newest first, where every message shares the same time and
+     * lives on a different shard
+     *
+     * Expected Response:
+     *  The shards' messages are merged by descending messageId, with a cursor until the last page
+     */
+    @Test
+    public void timeRangePagesSpanShards() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages?until=1669947792&limit=2");
+        Assertions.assertEquals(List.of(
+                        new Message(9999, 9999, "test message 1", 1669947792L),
+                        new Message(9997, 9997, "test message 2", 1669947792L)),
+                objectMapper.readValue(first.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertEquals("1669947792:9997", first.headers().firstValue(SocialMediaController.NEXT_CURSOR_HEADER).orElse(null));
+
+        HttpResponse<String> last = get("/messages?until=1669947792&before=1669947792:9997&limit=2");
+        Assertions.assertEquals(List.of(new Message(9996, 9996, "test message 3", 1669947792L)),
+                objectMapper.readValue(last.body(), new TypeReference<List<Message>>(){}));
+        Assertions.assertTrue(last.headers().firstValue(SocialMediaController.NEXT_CURSOR_HEADER).isEmpty());
+    }
+
+    private JdbcTemplate shard(int shard) {
+        String url = shard == 0 ? "jdbc:h2:mem:testdb" : "jdbc:h2:mem:shard" + shard;
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", "password"));
+    }
+
+    private Message post(String body) throws IOException, InterruptedException {
+        return objectMapper.readValue(webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString()).body(), Message.class);
+    }
+
+    private void delete(int messageId) throws IOException, InterruptedException {
+        webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,178 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TimeRangeMessagesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=1669947792 after posting one older and one newer
+     * message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the newer message, then the three fixtures posted at 1669947792, newest first
+     */
+    @Test
+    public void getMessagesSince() throws IOException, InterruptedException {
+        post(9999, "older", 1669900000L);
+        Message newer = post(9998, "newer", 1670000000L);
+
+        HttpResponse<String> response = get("/messages?since=1669947792");
+
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = List.of(
+                newer,
+                new Message(9999, 9999, "test message 1", 1669947792L),
+                new Message(9997, 9997, "test message 2", 1669947792L),
+                new Message(9996, 9996, "test message 3", 1669947792L));
+        List<Message> actualResult = messages(response);
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/messages?since=1669900000&until=1669947792
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the account's messages posted in the range, newest first, without the later one
+     */
+    @Test
+    public void getMessagesFromUserBetween() throws IOException, InterruptedException {
+        Message older = post(9999, "older", 1669900000L);
+        post(9999, "later", 1670000000L);
+
+        HttpResponse<String> response = get("/accounts/9999/messages?since=1669900000&until=1669947792");
+
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = List.of(new Message(9999, 9999, "test message 1", 1669947792L), older);
+        List<Message> actualResult = messages(response);
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    /**
+     * Paging through GET localhost:8080/messages?until=1669947792&limit=2, where every message shares the same time
+     *
+     * Expected Response:
+     *  X-Next-Cursor holds the time and messageId of the last message on the first page; passing it as before
+     *  returns the remaining message without repeating any
+     */
+    @Test
+    public void getMessagesBetweenPages() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("/messages?until=1669947792&limit=2");
+        Assertions.assertEquals(List.of(
+                        new Message(9999, 9999, "test message 1", 1669947792L),
+                        new Message(9997, 9997, "test message 2", 1669947792L)),
+                messages(first));
+        Assertions.assertEquals(Optional.of("1669947792:9997"), first.headers().firstValue("X-Next-Cursor"));
+
+        HttpResponse<String> last = get("/messages?until=1669947792&before=1669947792:9997&limit=2");
+        Assertions.assertEquals(List.of(new Message(9996, 9996, "test message 3", 1669947792L)), messages(last));
+        Assertions.assertTrue(last.headers().firstValue("X-Next-Cursor").isEmpty(), "Expected no next cursor on the last page");
+    }
+
+    /**
+     * Paging through GET localhost:8080/accounts/9999/messages?since=1669900000&limit=2 over messages posted at
+     * different times, following only the X-Next-Cursor header
+     *
+     * Expected Response:
+     *  Every message of the account in the range, each exactly once, newest first, then no cursor
+     */
+    @Test
+    public void getMessagesFromUserBetweenFollowingCursor() throws IOException, InterruptedException {
+        Message first = post(9999, "first", 1669900000L);
+        Message second = post(9999, "second", 1669910000L);
+        Message third = post(9999, "third", 1669920000L);
+        Message fourth = post(9999, "fourth", 1670000000L);
+
+        List<Message> found = new ArrayList<>();
+        String path = "/accounts/9999/messages?since=1669900000&limit=2";
+        for (int pages = 0; pages < 5; pages++) {
+            HttpResponse<String> response = get(path);
+            Assertions.assertEquals(200, response.statusCode());
+            found.addAll(messages(response));
+            Optional<String> next = response.headers().firstValue("X-Next-Cursor");
+            if (next.isEmpty()) {
+                break;
+            }
+            path = "/accounts/9999/messages?since=1669900000&limit=2&before=" + next.get();
+        }
+
+        Assertions.assertEquals(List.of(fourth, new Message(9999, 9999, "test message 1", 1669947792L), third, second, first), found);
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages with since after until, with both after and since, and
+     * with a cursor that is not a time:messageId pair
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesInvalidTimeRange() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, get("/messages?since=1669947793&until=1669947792").statusCode());
+        Assertions.assertEquals(400, get("/accounts/9999/messages?since=1669947792&after=9996").statusCode());
+        Assertions.assertEquals(400, get("/messages?before=9997").statusCode());
+    }
+
+    private Message post(int postedBy, String messageText, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                        new Message(postedBy, messageText, timePostedEpoch))))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Message> messages(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+}
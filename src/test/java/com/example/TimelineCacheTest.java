@@ -0,0 +1,140 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.cache.TimelineCache;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs the app with the timeline cache in verify mode, so every cached read is also checked against the database.
+ */
+public class TimelineCacheTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--socialmedia.cache.timelines.verify=true"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Creating, updating and deleting messages should keep a cached timeline identical to the database.
+     */
+    @Test
+    public void timelineFollowsWrites() throws IOException, InterruptedException {
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+
+        HttpResponse<String> created = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947793}"))
+                .header("Content-Type", "application/json"));
+        Message createdMessage = objectMapper.readValue(created.body(), Message.class);
+        expectedResult.add(0, createdMessage);
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"text changed\"}"))
+                .header("Content-Type", "application/json"));
+        expectedResult.set(1, new Message(9999, 9999, "text changed", 1669947792L));
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + createdMessage.getMessageId()))
+                .DELETE());
+        expectedResult.remove(0);
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+
+        Assertions.assertTrue(app.getBean(TimelineCache.class).stats().hitCount() >= 3, "Expected timeline reads to be cache hits");
+    }
+
+    /**
+     * A timeline larger than one page should still be served from the cache in keyset pages.
+     */
+    @Test
+    public void cachedTimelineIsPaged() throws IOException, InterruptedException {
+        getTimeline(9999);
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages?after=0&limit=1")));
+        Assertions.assertTrue(response.headers().firstValue("X-Next-Cursor").isEmpty(), "Expected no next cursor on the last page");
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(1, actualResult.size());
+    }
+
+    /**
+     * An account that grows past maximum-messages-per-account stops being cached, and should be cached again once
+     * deletes bring it back under the limit. In verify mode a stale uncacheable marker fails the read.
+     */
+    @Test
+    public void timelineIsCachedAgainAfterShrinking() throws IOException, InterruptedException {
+        SpringApplication.exit(app);
+        app = SpringApplication.run(SocialMediaApp.class, "--socialmedia.cache.timelines.verify=true",
+                "--socialmedia.cache.timelines.maximum-messages-per-account=1");
+        Thread.sleep(500);
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+
+        HttpResponse<String> created = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947793}"))
+                .header("Content-Type", "application/json"));
+        Message createdMessage = objectMapper.readValue(created.body(), Message.class);
+        Assertions.assertEquals(2, getTimeline(9999).size());
+
+        send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + createdMessage.getMessageId()))
+                .DELETE());
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+
+        long hits = app.getBean(TimelineCache.class).stats().hitCount();
+        Assertions.assertEquals(expectedResult, getTimeline(9999));
+        Assertions.assertEquals(hits + 1, app.getBean(TimelineCache.class).stats().hitCount(), "Expected the shrunk timeline to be cached");
+    }
+
+    private List<Message> getTimeline(int accountId) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountId + "/messages")));
+        return objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status + " " + response.body());
+        return response;
+    }
+}
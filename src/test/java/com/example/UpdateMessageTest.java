@@ -5,6 +5,7 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Optional;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -12,6 +13,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -123,4 +129,30 @@ public class UpdateMessageTest {
         int status = response.statusCode();
         Assertions.assertEquals(400, status, "Expected Status Code 400 - Actual Code was: " + status);
     }
+
+    /**
+     * Updating message 9999 through the repository in a transaction that has already loaded it, then deleting it in
+     * a transaction of its own
+     *
+     * Expected Response:
+     *  Each update returns the text it replaced, not that of the loaded instance, and once deleted the Message is
+     *  no longer found in the same transaction
+     */
+    @Test
+    public void returnedRowsAreNotStaleEntities() {
+        MessageRepository messageRepository = app.getBean(MessageRepository.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(app.getBean(PlatformTransactionManager.class));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Assertions.assertEquals("test message 1", messageRepository.findById(9999).get().getMessageText());
+            messageRepository.updateByMessageIdAndMessageTextReturningPrevious(9999, "first change");
+            Assertions.assertEquals(Optional.of(new Message(9999, 9999, "first change", 1669947792L)),
+                    messageRepository.updateByMessageIdAndMessageTextReturningPrevious(9999, "text changed"));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            Assertions.assertEquals(Optional.of(new Message(9999, 9999, "text changed", 1669947792L)),
+                    messageRepository.deleteByMessageIdReturning(9999));
+            Assertions.assertEquals(Optional.empty(), messageRepository.findById(9999));
+        });
+    }
 }
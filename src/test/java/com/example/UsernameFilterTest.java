@@ -0,0 +1,99 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.index.UsernameFilter;
+
+public class UsernameFilterTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Usernames loaded at startup and registered since must always be reported as possibly taken.
+     */
+    @Test
+    public void filterContainsExistingUsernames() throws IOException, InterruptedException {
+        UsernameFilter usernameFilter = app.getBean(UsernameFilter.class);
+        Assertions.assertTrue(usernameFilter.mightContain("testuser1"));
+        Assertions.assertEquals(200, register("user").statusCode());
+        Assertions.assertTrue(usernameFilter.mightContain("user"));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/register for a username that was inserted behind the filter's
+     * back. The filter skips the lookup, so the unique constraint must reject the insert.
+     *
+     * Expected Response:
+     *  Status Code: 409
+     */
+    @Test
+    public void registerUsernameMissingFromFilter() throws IOException, InterruptedException {
+        app.getBean(JdbcTemplate.class).update("insert into account (accountId, username, password) values (5000, 'hidden', 'password')");
+        HttpResponse<String> response = register("hidden");
+        int status = response.statusCode();
+        Assertions.assertEquals(409, status, "Expected Status Code 409 - Actual Code was: " + status);
+    }
+
+    /**
+     * Sending many concurrent http requests to POST localhost:8080/register with the same new username
+     *
+     * Expected Response:
+     *  Exactly one Status Code 200, every other Status Code 409
+     */
+    @Test
+    public void concurrentRegistrationsOfSameUsername() {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            responses.add(webClient.sendAsync(registerRequest("contended"), HttpResponse.BodyHandlers.ofString()));
+        }
+        long succeeded = responses.stream().map(CompletableFuture::join).filter(response -> response.statusCode() == 200).count();
+        long conflicted = responses.stream().map(CompletableFuture::join).filter(response -> response.statusCode() == 409).count();
+        Assertions.assertEquals(1, succeeded, "Expected exactly one successful registration");
+        Assertions.assertEquals(15, conflicted, "Expected every other registration to conflict");
+    }
+
+    private HttpResponse<String> register(String username) throws IOException, InterruptedException {
+        return webClient.send(registerRequest(username), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest registerRequest(String username) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+
+import com.example.threads.VirtualThreads;
+
+/**
+ * The socialmedia.threads.virtual=true mode. The tests that need virtual threads only run when the build runs on
+ * Java 21 or later, and are skipped on the default Java 17 build. The virtual-threads profile runs them on a Java 21
+ * JVM and fails instead of skipping them if that JVM is older.
+ */
+public class VirtualThreadTest {
+    ApplicationContext app;
+    HttpClient webClient = HttpClient.newHttpClient();
+
+    @AfterEach
+    public void tearDown() {
+        if (app != null) {
+            SpringApplication.exit(app);
+        }
+    }
+
+    /**
+     * Enabling the mode on a JVM without virtual threads must fail at startup instead of silently using
+     * platform threads.
+     */
+    @Test
+    public void virtualModeNeedsJava21() {
+        Assumptions.assumeFalse(VirtualThreads.isSupported());
+        Assertions.assertThrows(Exception.class, () -> SpringApplication.run(SocialMediaApp.class, "--socialmedia.threads.virtual=true"));
+    }
+
+    /**
+     * Tomcat hands requests to a virtual-thread-per-task executor instead of its worker pool.
+     */
+    @Test
+    public void requestsRunOnVirtualThreads() throws IOException, InterruptedException {
+        assumeVirtualThreads();
+        app = SpringApplication.run(SocialMediaApp.class, "--socialmedia.threads.virtual=true");
+
+        TomcatWebServer webServer = (TomcatWebServer) ((ServletWebServerApplicationContext) app).getWebServer();
+        String executor = webServer.getTomcat().getConnector().getProtocolHandler().getExecutor().getClass().getName();
+        Assertions.assertEquals("java.util.concurrent.ThreadPerTaskExecutor", executor);
+        Assertions.assertEquals(200, send(get("/messages/9999")).statusCode());
+    }
+
+    /**
+     * Drives every endpoint concurrently while JFR records jdk.VirtualThreadPinned events. A virtual thread that
+     * blocks while pinned to its carrier, e.g. inside a synchronized block in Tomcat, Hibernate, HikariCP or H2,
+     * fails the test with the stack trace of the pinning frame.
+     */
+    @Test
+    public void hibernateAndH2DoNotPinCarrierThreads() throws Exception {
+        assumeVirtualThreads();
+        app = SpringApplication.run(SocialMediaApp.class, "--socialmedia.threads.virtual=true");
+
+        // Spring's CGLIB proxies initialise each method's MethodProxy under a lock on its first call, which pins
+        // once per method. Warm every endpoint up first so that the recording sees steady-state requests only.
+        CompletableFuture.allOf(requests(0, 1).stream().map(this::sendAsync).toArray(CompletableFuture[]::new)).join();
+
+        Path file = Files.createTempFile("pinning", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            List<CompletableFuture<HttpResponse<String>>> responses = requests(1, 100).stream()
+                    .map(this::sendAsync)
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).join();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> pinned = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        Assertions.assertTrue(pinned.isEmpty(), "Virtual threads were pinned:\n" + pinned.stream()
+                .map(VirtualThreadTest::stackTrace)
+                .collect(Collectors.joining("\n\n")));
+    }
+
+    /**
+     * @return count requests to each of the eight endpoints, starting at message and user number from
+     */
+    /**
+     * Skips the calling test on a JVM without virtual threads, unless the virtual-threads profile requires them.
+     */
+    private static void assumeVirtualThreads() {
+        if (Boolean.getBoolean("socialmedia.test.require-virtual-threads")) {
+            Assertions.assertTrue(VirtualThreads.isSupported(), "The virtual-threads profile needs a Java 21 JVM, but the tests run on Java " + Runtime.version());
+        }
+        Assumptions.assumeTrue(VirtualThreads.isSupported());
+    }
+
+    private List<HttpRequest> requests(int from, int count) {
+        List<HttpRequest> requests = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            requests.add(post("/register", "{\"username\":\"user" + i + "\",\"password\":\"password\"}"));
+            requests.add(post("/login", "{\"username\":\"testuser1\",\"password\":\"password\"}"));
+            requests.add(post("/messages", "{\"postedBy\":9999,\"messageText\":\"hello " + i + "\",\"timePostedEpoch\":1669947792}"));
+            requests.add(get("/messages"));
+            requests.add(get("/messages/" + (i + 1)));
+            requests.add(HttpRequest.newBuilder(URI.create("http://localhost:8080/messages/" + (i + 1)))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"updated\"}"))
+                    .header("Content-Type", "application/json")
+                    .build());
+            requests.add(HttpRequest.newBuilder(URI.create("http://localhost:8080/messages/" + (i + 1))).DELETE().build());
+            requests.add(get("/accounts/9999/messages"));
+        }
+        return requests;
+    }
+
+    private static String stackTrace(RecordedEvent event) {
+        return event.getStackTrace().getFrames().stream()
+                .map(frame -> "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:8080" + path)).build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
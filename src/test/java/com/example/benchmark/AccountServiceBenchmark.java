@@ -0,0 +1,65 @@
+package com.example.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.entity.Account;
+import com.example.service.AccountService;
+
+/**
+ * AccountService registration and login against an account table seeded with rows accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountServiceBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    int rows;
+
+    ConfigurableApplicationContext app;
+    AccountService accountService;
+    AtomicLong usernames = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start();
+        BenchmarkApplication.seedAccounts(app, rows);
+        accountService = app.getBean(AccountService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    @Benchmark
+    public Account register() {
+        Account account = new Account("new" + usernames.incrementAndGet(), "password");
+        accountService.register(account);
+        return account;
+    }
+
+    @Benchmark
+    public Account login() {
+        int accountId = BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(rows);
+        return accountService.login(new Account("benchmark" + accountId, "password"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.index.AccountIdIndex;
+import com.example.repository.AccountRepository;
+
+/**
+ * Compares the postedBy check used by message creation: the in-memory AccountIdIndex against the previous
+ * AccountRepository.findById path, which loads and hydrates the whole Account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountValidationBenchmark {
+    @Param({"10000"})
+    int accounts;
+
+    ConfigurableApplicationContext app;
+    AccountIdIndex accountIdIndex;
+    AccountRepository accountRepository;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start();
+        BenchmarkApplication.seedAccounts(app, accounts);
+        accountIdIndex = app.getBean(AccountIdIndex.class);
+        accountIdIndex.load();
+        accountRepository = app.getBean(AccountRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    private int randomAccountId() {
+        return BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    @Benchmark
+    public boolean accountIdIndex() {
+        return accountIdIndex.exists(randomAccountId());
+    }
+
+    @Benchmark
+    public boolean repositoryFindById() {
+        return accountRepository.findById(randomAccountId()).isPresent();
+    }
+}
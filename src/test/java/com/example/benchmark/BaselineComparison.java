@@ -0,0 +1,80 @@
+package com.example.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares a JMH JSON result file against a stored baseline and exits with status 1 if any benchmark regressed by
+ * more than the tolerance. Benchmarks are matched on name and parameters; throughput must not drop, and every
+ * other mode (average time, sample, single shot) must not rise. Benchmarks missing from either file are listed
+ * but never fail the comparison.
+ *
+ * Usage: BaselineComparison result.json tolerancePercent [baseline.json]
+ * Without a baseline the comparison is skipped, so the benchmark profile can always run it.
+ */
+public final class BaselineComparison {
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("No JMH baseline given (-Djmh.baseline=...), skipping the comparison");
+            return;
+        }
+
+        double tolerance = Double.parseDouble(args[1]) / 100;
+        Map<String, JsonNode> results = read(new File(args[0]));
+        Map<String, JsonNode> baseline = read(new File(args[2]));
+
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            JsonNode result = entry.getValue();
+            JsonNode expected = baseline.get(entry.getKey());
+            if (expected == null) {
+                System.out.printf("NEW        %s%n", entry.getKey());
+                continue;
+            }
+
+            double score = result.path("primaryMetric").path("score").asDouble();
+            double baselineScore = expected.path("primaryMetric").path("score").asDouble();
+            double change = (score - baselineScore) / baselineScore;
+            boolean higherIsBetter = "thrpt".equals(result.path("mode").asText());
+            boolean regressed = higherIsBetter ? change < -tolerance : change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+
+            System.out.printf("%-10s %s: %.3f -> %.3f %s (%+.1f%%)%n", regressed ? "REGRESSED" : "OK", entry.getKey(),
+                    baselineScore, score, result.path("primaryMetric").path("scoreUnit").asText(), change * 100);
+        }
+        for (String missing : baseline.keySet()) {
+            if (!results.containsKey(missing)) {
+                System.out.printf("NOT RUN    %s%n", missing);
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %s%% against %s%n", regressions, args[1], args[2]);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return the benchmarks in a JMH JSON result file, keyed by benchmark name and parameters
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> benchmarks = new LinkedHashMap<>();
+        for (JsonNode benchmark : new ObjectMapper().readTree(file)) {
+            Map<String, String> params = new TreeMap<>();
+            benchmark.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            benchmarks.put(benchmark.path("benchmark").asText() + params, benchmark);
+        }
+        return benchmarks;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.SocialMediaApp;
+import com.example.index.AccountIdIndex;
+import com.example.index.UsernameFilter;
+
+/**
+ * Starts SocialMediaApp without a web server for JMH benchmarks, and seeds the embedded H2 database.
+ */
+public final class BenchmarkApplication {
+    // Seeded rows start here, clear of the 9996-9999 fixtures in data.sql and of any id generated during a run
+    public static final int FIRST_SEEDED_ID = 1_000_000_000;
+
+    // Rows sent to the database per JDBC batch while seeding
+    private static final int SEED_BATCH = 10_000;
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * Starts the application with quiet logging
+     * @param args extra application arguments, e.g. --socialmedia.cache.messages.maximum-size=0
+     * @return the running application context
+     */
+    public static ConfigurableApplicationContext start(String... args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList("--logging.level.root=WARN", "--spring.main.banner-mode=off"));
+        arguments.addAll(Arrays.asList(args));
+        return new SpringApplicationBuilder(SocialMediaApp.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(new String[0]));
+    }
+
+    /**
+     * Starts the application with its embedded web server and management server on random free ports, with quiet
+     * logging
+     * @param args extra application arguments
+     * @return the running application context; see {@link #baseUri(ConfigurableApplicationContext)}
+     */
+    public static ConfigurableApplicationContext startWeb(String... args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList("--logging.level.root=WARN", "--spring.main.banner-mode=off", "--server.port=0",
+                "--management.server.port=0"));
+        arguments.addAll(Arrays.asList(args));
+        return new SpringApplicationBuilder(SocialMediaApp.class)
+                .web(WebApplicationType.SERVLET)
+                .run(arguments.toArray(new String[0]));
+    }
+
+    /**
+     * @return the http://localhost:{port} address of an application started with {@link #startWeb(String...)}
+     */
+    public static String baseUri(ConfigurableApplicationContext app) {
+        return "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+    }
+
+    /**
+     * Inserts count accounts with consecutive IDs from FIRST_SEEDED_ID, usernames benchmark{id} and password
+     * "password", then reloads the in-memory account indexes as if the accounts had been there at startup
+     */
+    public static void seedAccounts(ConfigurableApplicationContext app, int count) {
+        insert(app, "insert into account (accountId, username, password) values (?, ?, ?)", count,
+                id -> new Object[] {id, "benchmark" + id, "password"});
+        app.getBean(AccountIdIndex.class).load();
+        app.getBean(UsernameFilter.class).load();
+    }
+
+    /**
+     * Inserts count messages with consecutive IDs from FIRST_SEEDED_ID, spread round-robin over the first
+     * accounts seeded accounts
+     */
+    public static void seedMessages(ConfigurableApplicationContext app, int count, int accounts) {
+        seedMessages(app, count, accounts, id -> "seeded message " + id);
+    }
+
+    /**
+     * Inserts count messages as above, with the text given for each messageId
+     */
+    public static void seedMessages(ConfigurableApplicationContext app, int count, int accounts, IntFunction<String> text) {
+        insert(app, "insert into message (messageId, postedBy, messageText, timePostedEpoch) values (?, ?, ?, ?)", count,
+                id -> new Object[] {id, FIRST_SEEDED_ID + (id - FIRST_SEEDED_ID) % accounts, text.apply(id), 1669947792L + id - FIRST_SEEDED_ID});
+    }
+
+    private static void insert(ConfigurableApplicationContext app, String sql, int count, IntFunction<Object[]> row) {
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(Math.min(count, SEED_BATCH));
+        for (int id = FIRST_SEEDED_ID; id < FIRST_SEEDED_ID + count; id++) {
+            rows.add(row.apply(id));
+            if (rows.size() == SEED_BATCH) {
+                jdbcTemplate.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Timeout;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Startup-to-ready time of a restart against an existing database file of rows messages from rows / 100 accounts,
+ * with the durable profile: from SpringApplication.run until the web server accepts requests. Each seeded message
+ * holds four words drawn from a vocabulary of about 10,000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Timeout(time = 1, timeUnit = TimeUnit.HOURS)
+public class DurableStartupBenchmark {
+    // Rows inserted per INSERT ... SELECT while seeding; far larger transactions slow H2 down
+    private static final int SEED_STATEMENT_ROWS = 100_000;
+
+    @Param({"1000000", "10000000"})
+    int rows;
+
+    @Param({"false", "true"})
+    boolean loadSearchIndexInBackground;
+
+    Path directory;
+    ConfigurableApplicationContext app;
+
+    @Setup(Level.Trial)
+    public void seed() throws IOException {
+        directory = Files.createTempDirectory("durable-startup");
+        ConfigurableApplicationContext firstBoot = BenchmarkApplication.start(arguments());
+        try {
+            JdbcTemplate jdbcTemplate = firstBoot.getBean(JdbcTemplate.class);
+            int accounts = Math.max(1, rows / 100);
+            jdbcTemplate.update("insert into account (accountId, username, password) " +
+                    "select ? + x, concat('benchmark', ? + x), 'password' from system_range(0, ? - 1)",
+                    BenchmarkApplication.FIRST_SEEDED_ID, BenchmarkApplication.FIRST_SEEDED_ID, accounts);
+            for (int from = 0; from < rows; from += SEED_STATEMENT_ROWS) {
+                jdbcTemplate.update("insert into message (messageId, postedBy, messageText, timePostedEpoch) " +
+                        "select ? + x, ? + mod(x, ?), " +
+                        "concat('word', mod(x * 7919, 10000), ' word', mod(x * 104729, 5000), ' word', mod(x * 31, 700), ' word', mod(x, 10)), " +
+                        "1669947792 + x from system_range(?, ?)",
+                        BenchmarkApplication.FIRST_SEEDED_ID, BenchmarkApplication.FIRST_SEEDED_ID, accounts,
+                        from, Math.min(rows, from + SEED_STATEMENT_ROWS) - 1);
+            }
+        } finally {
+            firstBoot.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        app.close();
+    }
+
+    private String[] arguments() {
+        return new String[] {
+                "--spring.profiles.active=durable",
+                "--socialmedia.storage.directory=" + directory,
+                "--socialmedia.search.load-in-background=" + loadSearchIndexInBackground
+        };
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext restart() {
+        app = BenchmarkApplication.startWeb(arguments());
+        return app;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * A burst of concurrent POST /messages requests, each committed on its own or through the group-commit writer.
+ * Reports messages per millisecond across all threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class GroupCommitBenchmark {
+    @Param({"false", "true"})
+    boolean groupCommit;
+
+    @Param({"1000"})
+    int accounts;
+
+    ConfigurableApplicationContext app;
+    HttpClient webClient;
+    URI messagesUri;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.startWeb("--socialmedia.messages.group-commit.enabled=" + groupCommit);
+        BenchmarkApplication.seedAccounts(app, accounts);
+        webClient = HttpClient.newHttpClient();
+        messagesUri = URI.create(BenchmarkApplication.baseUri(app) + "/messages");
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    @Benchmark
+    public int createMessage() throws IOException, InterruptedException {
+        int postedBy = BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(accounts);
+        HttpRequest request = HttpRequest.newBuilder(messagesUri)
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":" + postedBy + ",\"messageText\":\"burst message\",\"timePostedEpoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<Void> response = webClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST /messages answered " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.entity.Message;
+import com.example.service.MessageBatchResult;
+import com.example.service.MessageService;
+
+/**
+ * Message inserts with ids reserved one at a time (block size 1, a sequence call per insert, as with the previous
+ * hibernate_sequence) against blocks of 50 handed out from memory. Both benchmarks report messages per millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGenerationBenchmark {
+    static final int BATCH = 100;
+
+    @Param({"1", "50"})
+    int blockSize;
+
+    @Param({"1000"})
+    int accounts;
+
+    ConfigurableApplicationContext app;
+    MessageService messageService;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start("--spring.jpa.properties.socialmedia.id.block-size=" + blockSize);
+        BenchmarkApplication.seedAccounts(app, accounts);
+        messageService = app.getBean(MessageService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    private Message newMessage() {
+        int postedBy = BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(accounts);
+        return new Message(postedBy, "benchmark message", 1669947792L);
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        Message message = newMessage();
+        messageService.createMessage(message);
+        return message;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<MessageBatchResult> createMessages() {
+        List<Message> messages = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            messages.add(newMessage());
+        }
+        return messageService.createMessages(messages);
+    }
+}
@@ -0,0 +1,352 @@
+package com.example.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.entity.Message;
+import com.example.threads.VirtualThreads;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Closed-loop HTTP load test. Starts SocialMediaApp on a random local port, seeds it, and has many concurrent
+ * clients send a weighted mix of the eight SocialMediaController endpoints. Each client waits for its response
+ * before sending the next request. Once the warmup is over, it reports throughput and p50/p99/p99.9 latency
+ * per route from HDR histograms.
+ *
+ * Options are key=value arguments, all optional:
+ *  clients=64        concurrent clients, each on its own thread
+ *  clientThreads=platform  platform or virtual (Java 21+) client threads; virtual suits many thousands of clients
+ *  duration=30       measured seconds
+ *  warmup=5          seconds run before measuring, so the JIT and caches settle
+ *  accounts=1000     seeded accounts
+ *  messages=10000    seeded messages
+ *  mix=route:weight,...  relative frequency of each route, e.g. mix=getMessageById:1,createMessage:1;
+ *                    routes left out of a given mix are not sent. The default mix is read heavy.
+ *  server=platform   platform or virtual: the request threads of the in-process app (socialmedia.threads.virtual)
+ *  url=              base URL of an app that is already running, e.g. http://localhost:8080, instead of starting
+ *                    one in process. It is seeded through the API. Use this for more connections than one
+ *                    process has file descriptors for, since each in-process connection needs two.
+ */
+public final class LoadGenerator {
+    private static final Map<String, Integer> DEFAULT_MIX = new LinkedHashMap<>();
+    static {
+        DEFAULT_MIX.put("register", 5);
+        DEFAULT_MIX.put("login", 10);
+        DEFAULT_MIX.put("createMessage", 15);
+        DEFAULT_MIX.put("getMessages", 5);
+        DEFAULT_MIX.put("getMessageById", 30);
+        DEFAULT_MIX.put("deleteMessage", 5);
+        DEFAULT_MIX.put("updateMessage", 10);
+        DEFAULT_MIX.put("getMessagesFromAccount", 20);
+    }
+
+    // Latencies are recorded in microseconds, up to one minute, to three significant digits
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toMicros(1);
+
+    // Requests without a response by then count as failed, so a stalled server cannot hang the run
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(1);
+
+    private final HttpClient webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUri;
+    private final int[] accountIds;
+    private final String[] usernames;
+    private final int[] messageIds;
+    private final List<Route> routes = new ArrayList<>();
+    private final int totalWeight;
+    // Registered usernames are unique to this run, so that runs against the same app do not collide
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong registrations = new AtomicLong();
+    // Messages created under load, so that deletes remove real rows without emptying the seeded table
+    private final Queue<Integer> createdMessageIds = new ConcurrentLinkedQueue<>();
+    // Requests that got no response, by exception
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    private LoadGenerator(String baseUri, int[] accountIds, String[] usernames, int[] messageIds, Map<String, Integer> mix) {
+        this.baseUri = baseUri;
+        this.accountIds = accountIds;
+        this.usernames = usernames;
+        this.messageIds = messageIds;
+
+        Map<String, Supplier<HttpRequest>> requests = new HashMap<>();
+        requests.put("register", () -> post("/register", "{\"username\":\"load-" + runId + "-" + registrations.incrementAndGet() + "\",\"password\":\"password\"}"));
+        requests.put("login", () -> post("/login", "{\"username\":\"" + usernames[ThreadLocalRandom.current().nextInt(usernames.length)] + "\",\"password\":\"password\"}"));
+        requests.put("createMessage", () -> post("/messages", "{\"postedBy\":" + randomAccountId() + ",\"messageText\":\"load test\",\"timePostedEpoch\":1669947792}"));
+        requests.put("getMessages", () -> request("/messages").GET().build());
+        requests.put("getMessageById", () -> request("/messages/" + randomMessageId()).GET().build());
+        requests.put("deleteMessage", () -> {
+            Integer messageId = createdMessageIds.poll();
+            return request("/messages/" + (messageId == null ? randomMessageId() : messageId)).DELETE().build();
+        });
+        requests.put("updateMessage", () -> request("/messages/" + randomMessageId())
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\":\"updated under load\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+        requests.put("getMessagesFromAccount", () -> request("/accounts/" + randomAccountId() + "/messages").GET().build());
+
+        int weights = 0;
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            Supplier<HttpRequest> request = requests.get(entry.getKey());
+            if (request == null) {
+                throw new IllegalArgumentException("Unknown route " + entry.getKey() + ", expected one of " + DEFAULT_MIX.keySet());
+            }
+            if (entry.getValue() > 0) {
+                routes.add(new Route(entry.getKey(), entry.getValue(), request));
+                weights += entry.getValue();
+            }
+        }
+        if (weights == 0) {
+            throw new IllegalArgumentException("The mix does not send any route");
+        }
+        this.totalWeight = weights;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^-+", "").split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "");
+        }
+
+        int clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        boolean virtualClients = "virtual".equals(options.getOrDefault("clientThreads", "platform"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        int messages = Integer.parseInt(options.getOrDefault("messages", "10000"));
+        Map<String, Integer> mix = options.containsKey("mix") ? parseMix(options.get("mix")) : DEFAULT_MIX;
+
+        if (options.containsKey("url")) {
+            LoadGenerator generator = seedOverHttp(options.get("url"), accounts, messages, mix);
+            System.out.printf("%d clients against %s, %d s warmup, %d s measured, %d accounts, %d messages%n",
+                    clients, generator.baseUri, warmup, duration, accounts, messages);
+            generator.run(clients, virtualClients, warmup, duration);
+            return;
+        }
+
+        boolean virtualServer = "virtual".equals(options.getOrDefault("server", "platform"));
+        ConfigurableApplicationContext app = BenchmarkApplication.startWeb("--socialmedia.threads.virtual=" + virtualServer,
+                "--server.tomcat.max-connections=" + Math.max(8192, clients + 100));
+        try {
+            BenchmarkApplication.seedAccounts(app, accounts);
+            BenchmarkApplication.seedMessages(app, messages, accounts);
+
+            int[] accountIds = new int[accounts];
+            String[] usernames = new String[accounts];
+            for (int i = 0; i < accounts; i++) {
+                accountIds[i] = BenchmarkApplication.FIRST_SEEDED_ID + i;
+                usernames[i] = "benchmark" + accountIds[i];
+            }
+            int[] messageIds = new int[messages];
+            for (int i = 0; i < messages; i++) {
+                messageIds[i] = BenchmarkApplication.FIRST_SEEDED_ID + i;
+            }
+
+            LoadGenerator generator = new LoadGenerator(BenchmarkApplication.baseUri(app), accountIds, usernames, messageIds, mix);
+            System.out.printf("%d clients against %s (%s request threads), %d s warmup, %d s measured, %d accounts, %d messages%n",
+                    clients, generator.baseUri, virtualServer ? "virtual" : "platform", warmup, duration, accounts, messages);
+            generator.run(clients, virtualClients, warmup, duration);
+        } finally {
+            app.close();
+        }
+    }
+
+    /**
+     * Seeds a running app through POST /register and POST /messages/batch, under usernames unique to this run
+     */
+    private static LoadGenerator seedOverHttp(String url, int accounts, int messages, Map<String, Integer> mix) throws IOException, InterruptedException {
+        HttpClient webClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+
+        int[] accountIds = new int[accounts];
+        String[] usernames = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            usernames[i] = "seed-" + run + "-" + i;
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/register")).timeout(REQUEST_TIMEOUT)
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + usernames[i] + "\",\"password\":\"password\"}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            accountIds[i] = objectMapper.readTree(webClient.send(request, HttpResponse.BodyHandlers.ofString()).body()).get("accountId").asInt();
+        }
+
+        int[] messageIds = new int[messages];
+        for (int from = 0; from < messages; from += 1000) {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = from; i < Math.min(from + 1000, messages); i++) {
+                json.append(i == from ? "" : ",").append("{\"postedBy\":").append(accountIds[i % accounts])
+                        .append(",\"messageText\":\"seeded message ").append(i).append("\",\"timePostedEpoch\":1669947792}");
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/messages/batch")).timeout(REQUEST_TIMEOUT)
+                    .POST(HttpRequest.BodyPublishers.ofString(json.append(']').toString()))
+                    .header("Content-Type", "application/json")
+                    .build();
+            int i = from;
+            for (JsonNode result : objectMapper.readTree(webClient.send(request, HttpResponse.BodyHandlers.ofString()).body())) {
+                messageIds[i++] = result.get("message").get("messageId").asInt();
+            }
+        }
+
+        return new LoadGenerator(url, accountIds, usernames, messageIds, mix);
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String route : mix.split(",")) {
+            String[] weight = route.split(":", 2);
+            weights.put(weight[0].trim(), weight.length > 1 ? Integer.parseInt(weight[1].trim()) : 1);
+        }
+        return weights;
+    }
+
+    private void run(int clients, boolean virtualClients, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService executor = virtualClients
+                ? VirtualThreads.newVirtualThreadPerTaskExecutor("load-client-")
+                : Executors.newFixedThreadPool(clients);
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> client(end));
+        }
+
+        TimeUnit.NANOSECONDS.sleep(measureFrom - System.nanoTime());
+        for (Route route : routes) {
+            route.reset();
+        }
+        long measuredFrom = System.nanoTime();
+
+        executor.shutdown();
+        executor.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS);
+        report((System.nanoTime() - measuredFrom) / 1e9);
+    }
+
+    private void client(long end) {
+        while (System.nanoTime() < end) {
+            Route route = pickRoute();
+            HttpRequest request = route.request.get();
+            long sent = System.nanoTime();
+            try {
+                HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+                route.record(System.nanoTime() - sent, response.statusCode());
+                if (route.name.equals("createMessage") && response.statusCode() == 200) {
+                    createdMessageIds.add(objectMapper.readValue(response.body(), Message.class).getMessageId());
+                }
+            } catch (IOException e) {
+                route.record(System.nanoTime() - sent, 0);
+                failures.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(), failure -> new LongAdder()).increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Route pickRoute() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Route route : routes) {
+            pick -= route.weight;
+            if (pick < 0) {
+                return route;
+            }
+        }
+        throw new IllegalStateException("Route weights changed");
+    }
+
+    private void report(double seconds) {
+        System.out.printf("%n%-24s %10s %10s %10s %10s %10s %10s %8s%n",
+                "route", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors");
+
+        Histogram total = new Histogram(HIGHEST_LATENCY, 3);
+        long totalErrors = 0;
+        for (Route route : routes) {
+            Histogram latencies = route.latencies.copy();
+            total.add(latencies);
+            totalErrors += route.errors.sum();
+            print(route.name, latencies, route.errors.sum(), seconds);
+        }
+        print("total", total, totalErrors, seconds);
+        System.out.printf("%nerrors are responses other than 200, or failed connections%n");
+        failures.forEach((failure, count) -> System.out.printf("%8d x %s%n", count.sum(), failure));
+    }
+
+    private static void print(String name, Histogram latencies, long errors, double seconds) {
+        System.out.printf("%-24s %10d %10.1f %10.2f %10.2f %10.2f %10.2f %8d%n", name,
+                latencies.getTotalCount(), latencies.getTotalCount() / seconds,
+                latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0, latencies.getMaxValue() / 1000.0, errors);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUri + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private HttpRequest post(String path, String json) {
+        return request(path)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private int randomAccountId() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+    }
+
+    private int randomMessageId() {
+        return messageIds[ThreadLocalRandom.current().nextInt(messageIds.length)];
+    }
+
+    /**
+     * One endpoint in the mix, with the latencies and error count of its responses
+     */
+    private final class Route {
+        private final String name;
+        private final int weight;
+        private final Supplier<HttpRequest> request;
+        private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+        private final LongAdder errors = new LongAdder();
+
+        private Route(String name, int weight, Supplier<HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        private void record(long nanos, int status) {
+            latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_LATENCY));
+            if (status != 200) {
+                errors.increment();
+            }
+        }
+
+        private void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+    }
+}
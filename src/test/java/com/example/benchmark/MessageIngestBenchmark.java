@@ -0,0 +1,97 @@
+package com.example.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Importing MESSAGES messages over HTTP: one POST /messages per message against a single POST /messages/batch.
+ * Both benchmarks report messages per millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageIngestBenchmark {
+    static final int MESSAGES = 1000;
+
+    @Param({"1000"})
+    int accounts;
+
+    ConfigurableApplicationContext app;
+    HttpClient webClient;
+    URI messagesUri;
+    URI batchUri;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.startWeb();
+        BenchmarkApplication.seedAccounts(app, accounts);
+        webClient = HttpClient.newHttpClient();
+        messagesUri = URI.create(BenchmarkApplication.baseUri(app) + "/messages");
+        batchUri = URI.create(BenchmarkApplication.baseUri(app) + "/messages/batch");
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    private String messageJson() {
+        int postedBy = BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(accounts);
+        return "{\"postedBy\":" + postedBy + ",\"messageText\":\"imported message\",\"timePostedEpoch\":1669947792}";
+    }
+
+    private int post(URI uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<Void> response = webClient.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST " + uri + " answered " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int singleEndpoint() throws IOException, InterruptedException {
+        int status = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            status += post(messagesUri, messageJson());
+        }
+        return status;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int batchEndpoint() throws IOException, InterruptedException {
+        StringBuilder json = new StringBuilder(MESSAGES * 96).append('[');
+        for (int i = 0; i < MESSAGES; i++) {
+            json.append(i == 0 ? "" : ",").append(messageJson());
+        }
+        return post(batchUri, json.append(']').toString());
+    }
+}
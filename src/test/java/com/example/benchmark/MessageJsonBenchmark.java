@@ -0,0 +1,77 @@
+package com.example.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.cache.MessageJsonCache;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Writing one page of messages as a JSON list, serialized by Jackson or assembled from MessageJsonCache as the
+ * list endpoints do. The page is written to a discarding stream, so only the encoding is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageJsonBenchmark {
+    @Param({"20", "1000"})
+    int pageSize;
+
+    List<Message> page;
+    ObjectWriter listWriter;
+    MessageJsonCache messageJsonCache;
+    OutputStream output = OutputStream.nullOutputStream();
+
+    @Setup
+    public void setUp() {
+        // As in the Jackson HTTP converter, the response stream is left open after writing
+        ObjectMapper objectMapper = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Message.class));
+        messageJsonCache = new MessageJsonCache(objectMapper, 100_000);
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            // The cache keeps its own copies, so every hit pays the equality check a request would
+            page.add(new Message(i, i % 100, "benchmark message number " + i, 1669947792L + i));
+        }
+    }
+
+    @Benchmark
+    public List<Message> jackson() throws IOException {
+        listWriter.writeValue(output, page);
+        return page;
+    }
+
+    @Benchmark
+    public List<Message> cachedFragments() throws IOException {
+        output.write('[');
+        for (int i = 0; i < page.size(); i++) {
+            if (i > 0) {
+                output.write(',');
+            }
+            output.write(messageJsonCache.get(page.get(i)));
+        }
+        output.write(']');
+        return page;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+
+/**
+ * The list queries behind GET /messages and GET /accounts/{accountId}/messages, each read as managed entities, as
+ * the repository did before, and as the unmanaged projections it uses now. Both run in a read-only transaction, as
+ * in MessageService. 10,000 messages are seeded over 10,000 / listSize accounts, so every list holds listSize
+ * messages. Run with -prof gc for the bytes allocated per list (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageListBenchmark {
+    private static final int ROWS = 10_000;
+
+    @Param({"20", "1000", "10000"})
+    int listSize;
+
+    ConfigurableApplicationContext app;
+    MessageRepository messageRepository;
+    EntityManager entityManager;
+    TransactionTemplate readOnly;
+    int accounts;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start();
+        accounts = ROWS / listSize;
+        BenchmarkApplication.seedAccounts(app, accounts);
+        BenchmarkApplication.seedMessages(app, ROWS, accounts);
+        messageRepository = app.getBean(MessageRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(app.getBean(EntityManagerFactory.class));
+        readOnly = new TransactionTemplate(app.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    private int randomAccountId() {
+        return BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    @Benchmark
+    public List<Message> pageEntities() {
+        return readOnly.execute(status -> entityManager
+                .createQuery("SELECT m FROM Message m WHERE m.messageId > :messageId ORDER BY m.messageId", Message.class)
+                .setParameter("messageId", 0)
+                .setMaxResults(listSize + 1)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Message> pageProjection() {
+        return readOnly.execute(status ->
+                messageRepository.findByMessageIdGreaterThanOrderByMessageIdAsc(0, PageRequest.of(0, listSize)).getContent());
+    }
+
+    @Benchmark
+    public List<Message> fromUserEntities() {
+        return readOnly.execute(status -> entityManager
+                .createQuery("SELECT m FROM Message m WHERE m.postedBy = :postedBy", Message.class)
+                .setParameter("postedBy", randomAccountId())
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Message> fromUserProjection() {
+        return readOnly.execute(status -> messageRepository.findAllByPostedBy(randomAccountId()));
+    }
+}
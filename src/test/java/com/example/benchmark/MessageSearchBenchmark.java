@@ -0,0 +1,93 @@
+package com.example.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.entity.Message;
+import com.example.index.MessageTextIndex;
+import com.example.service.MessageService;
+
+/**
+ * GET /messages/search latency as the corpus grows, through MessageService with pages of 20 results. Every seeded
+ * message holds eight words drawn from a vocabulary of VOCABULARY words, skewed as in natural text: word0 appears
+ * in about one message in twelve, word9000 in about one in twenty-five hundred.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 8, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageSearchBenchmark {
+    static final int VOCABULARY = 10_000;
+    static final int WORDS_PER_MESSAGE = 8;
+
+    @Param({"1000", "100000", "1000000"})
+    int rows;
+
+    ConfigurableApplicationContext app;
+    MessageService messageService;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start();
+        int accounts = Math.max(1, rows / 100);
+        BenchmarkApplication.seedAccounts(app, accounts);
+        BenchmarkApplication.seedMessages(app, rows, accounts, MessageSearchBenchmark::text);
+        app.getBean(MessageTextIndex.class).load();
+        messageService = app.getBean(MessageService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    /**
+     * Eight words for one message, the same on every run. Squaring a uniform draw makes low-numbered words common.
+     */
+    static String text(int messageId) {
+        SplittableRandom random = new SplittableRandom(messageId);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_MESSAGE; i++) {
+            double draw = random.nextDouble();
+            text.append(i == 0 ? "" : " ").append("word").append((int) (draw * draw * VOCABULARY));
+        }
+        return text.toString();
+    }
+
+    @Benchmark
+    public List<Message> commonTerm() {
+        return messageService.searchMessages("word0", null, 20).getMessages();
+    }
+
+    @Benchmark
+    public List<Message> rareTerm() {
+        return messageService.searchMessages("word9000", null, 20).getMessages();
+    }
+
+    @Benchmark
+    public List<Message> threeTerms() {
+        return messageService.searchMessages("word1 word500 word9000", null, 20).getMessages();
+    }
+
+    @Benchmark
+    public List<Message> threeTermsDeepPage() {
+        return messageService.searchMessages("word1 word500 word9000", 1000, 20).getMessages();
+    }
+}
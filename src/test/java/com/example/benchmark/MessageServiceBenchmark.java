@@ -0,0 +1,117 @@
+package com.example.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.entity.Message;
+import com.example.service.MessageService;
+
+/**
+ * Every MessageService operation behind the message endpoints, against a message table seeded with rows messages
+ * from rows / 100 accounts. The list benchmarks read the first page, as GET /messages and
+ * GET /accounts/{accountId}/messages do without parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageServiceBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    int rows;
+
+    ConfigurableApplicationContext app;
+    MessageService messageService;
+    int accounts;
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start();
+        accounts = Math.max(1, rows / 100);
+        BenchmarkApplication.seedAccounts(app, accounts);
+        BenchmarkApplication.seedMessages(app, rows, accounts);
+        messageService = app.getBean(MessageService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    /**
+     * A freshly created message for the delete benchmark to remove, so every invocation deletes a real row
+     */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        int messageId;
+
+        @Setup(Level.Invocation)
+        public void create(MessageServiceBenchmark benchmark) {
+            Message message = benchmark.newMessage();
+            benchmark.messageService.createMessage(message);
+            messageId = message.getMessageId();
+        }
+    }
+
+    private int randomAccountId() {
+        return BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    private int randomMessageId() {
+        return BenchmarkApplication.FIRST_SEEDED_ID + ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    private Message newMessage() {
+        return new Message(randomAccountId(), "benchmark message", 1669947792L);
+    }
+
+    @Benchmark
+    public Message create() {
+        Message message = newMessage();
+        messageService.createMessage(message);
+        return message;
+    }
+
+    @Benchmark
+    public Optional<Message> getById() {
+        return messageService.getMessageById(randomMessageId());
+    }
+
+    @Benchmark
+    public List<Message> getAll() {
+        return messageService.getMessages(null, null).getContent();
+    }
+
+    @Benchmark
+    public List<Message> getAllFromUser() {
+        return messageService.getAllMessagesFromUser(randomAccountId(), null, null).getContent();
+    }
+
+    @Benchmark
+    public Integer update() {
+        return messageService.updateMessage(randomMessageId(), "updated benchmark message");
+    }
+
+    @Benchmark
+    public Integer delete(DeleteTarget target) {
+        return messageService.deleteMessageById(target.messageId);
+    }
+}
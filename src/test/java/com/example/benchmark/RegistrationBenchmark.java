@@ -0,0 +1,64 @@
+package com.example.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.entity.Account;
+import com.example.service.AccountService;
+
+/**
+ * Many threads registering new usernames at once, with and without the UsernameFilter in front of the
+ * availability query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class RegistrationBenchmark {
+    @Param({"true", "false"})
+    boolean usernameFilter;
+
+    @Param({"10000"})
+    int accounts;
+
+    ConfigurableApplicationContext app;
+    AccountService accountService;
+    AtomicLong usernames = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        app = BenchmarkApplication.start("--socialmedia.accounts.username-filter.enabled=" + usernameFilter);
+        BenchmarkApplication.seedAccounts(app, accounts);
+        accountService = app.getBean(AccountService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.close();
+    }
+
+    @Benchmark
+    public Account registerNewUsername() {
+        Account account = new Account("new" + usernames.incrementAndGet(), "password");
+        accountService.register(account);
+        return account;
+    }
+}